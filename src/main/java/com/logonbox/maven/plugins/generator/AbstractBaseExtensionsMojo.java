@@ -1,9 +1,9 @@
 package com.logonbox.maven.plugins.generator;
 
 import java.io.IOException;
-import java.util.jar.JarFile;
 
 import org.apache.maven.artifact.Artifact;
+import org.apache.maven.execution.MavenSession;
 import org.apache.maven.plugin.AbstractMojo;
 import org.apache.maven.plugin.MojoExecutionException;
 import org.apache.maven.plugin.MojoFailureException;
@@ -18,8 +18,13 @@ public abstract class AbstractBaseExtensionsMojo extends AbstractMojo {
 	@Parameter(required = true, readonly = true, property = "project")
 	protected MavenProject project;
 
+	@Parameter(defaultValue = "${session}", required = true, readonly = true)
+	protected MavenSession session;
+
 	@Parameter(defaultValue = "false")
 	protected boolean skipPoms;
+
+	private ExtensionIndex extensionIndex;
 	
 	protected final boolean isSkipPoms() {
 		return skipPoms;
@@ -28,7 +33,11 @@ public abstract class AbstractBaseExtensionsMojo extends AbstractMojo {
 	@Override
 	public final void execute() throws MojoExecutionException, MojoFailureException {
 		if(!isSkipPoms() || ( isSkipPoms() && ( project == null || !project.getPackaging().equals("pom")))) {
-			onExecute();
+			try {
+				onExecute();
+			} finally {
+				afterExecute();
+			}
 		}
 		else
 			getLog().info(String.format("Skipping %s, it is a POM and we are configured to skip these.", project.getArtifact().getArtifactId()));
@@ -38,6 +47,20 @@ public abstract class AbstractBaseExtensionsMojo extends AbstractMojo {
 		
 	}
 
+	/**
+	 * Called after {@link #onExecute()}, whether or not it succeeded.
+	 */
+	protected void afterExecute() {
+		if (extensionIndex != null) {
+			getLog().info(extensionIndex.toString());
+			try {
+				extensionIndex.save();
+			} catch (IOException ioe) {
+				getLog().warn("Failed to save extension index.", ioe);
+			}
+		}
+	}
+
 	protected String getArtifactVersion(Artifact artifact) {
 		return getArtifactVersion(artifact, true);
 	}
@@ -52,10 +75,10 @@ public abstract class AbstractBaseExtensionsMojo extends AbstractMojo {
 
 	protected boolean isJarExtension(Artifact artifact) {
 		if ("jar".equals(artifact.getType())) {
-			try (JarFile jarFile = new JarFile(artifact.getFile())) {
-				if (jarFile.getEntry("extension.def") != null) {
-					return true;
-				}
+			if (extensionIndex == null)
+				extensionIndex = ExtensionIndex.get(session);
+			try {
+				return extensionIndex.isExtension(artifact.getFile());
 			} catch (IOException ioe) {
 				throw new IllegalStateException("Failed to test for extension jar.", ioe);
 			}
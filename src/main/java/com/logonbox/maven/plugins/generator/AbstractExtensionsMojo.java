@@ -1,31 +1,42 @@
 package com.logonbox.maven.plugins.generator;
 
 import java.io.File;
-import java.io.FilterInputStream;
-import java.io.FilterOutputStream;
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
 import java.nio.file.attribute.FileTime;
 import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Properties;
 import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.jar.Manifest;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 import java.util.zip.ZipEntry;
-import java.util.zip.ZipInputStream;
-import java.util.zip.ZipOutputStream;
+import java.util.zip.ZipException;
 
+import javax.json.Json;
+import javax.json.JsonObjectBuilder;
 import javax.xml.parsers.DocumentBuilder;
 import javax.xml.parsers.DocumentBuilderFactory;
 import javax.xml.transform.OutputKeys;
 import javax.xml.transform.Transformer;
+import javax.xml.transform.TransformerException;
 import javax.xml.transform.TransformerFactory;
 import javax.xml.transform.dom.DOMSource;
 import javax.xml.transform.stream.StreamResult;
@@ -37,7 +48,6 @@ import org.apache.maven.artifact.repository.ArtifactRepository;
 import org.apache.maven.artifact.repository.ArtifactRepositoryPolicy;
 import org.apache.maven.artifact.repository.MavenArtifactRepository;
 import org.apache.maven.artifact.repository.layout.ArtifactRepositoryLayout;
-import org.apache.maven.execution.MavenSession;
 import org.apache.maven.plugin.MojoExecutionException;
 import org.apache.maven.plugin.MojoFailureException;
 import org.apache.maven.plugins.annotations.Component;
@@ -78,11 +88,6 @@ public abstract class AbstractExtensionsMojo extends AbstractBaseExtensionsMojo
 			"com.nervepoint", "com.sshtools", "com.jadaptive");
 	private static final Pattern ALT_REPO_SYNTAX_PATTERN = Pattern.compile("(.+)::(.*)::(.+)");
 
-	@Parameter(defaultValue = "${session}", required = true, readonly = true)
-	protected MavenSession session;
-
-	static Map<Artifact, Path> lastVersionProcessed = new HashMap<>();
-
 	/**
 	 *
 	 */
@@ -132,6 +137,30 @@ public abstract class AbstractExtensionsMojo extends AbstractBaseExtensionsMojo
 	protected List<String> excludeClassifiers;
 	@Parameter(property = "extensions.copyOncePerRuntime", defaultValue = "true")
 	protected boolean copyOncePerRuntime = true;
+
+	/**
+	 * Maximum number of extension archives to resolve at the same time. Each
+	 * resolution usually involves at least one round trip to a remote repository,
+	 * so this may be well above the number of processors. Set to 1 to resolve one
+	 * at a time.
+	 */
+	@Parameter(property = "extensions.resolveThreads", defaultValue = "8")
+	protected int resolveThreads = 8;
+
+	/**
+	 * Remember artifacts that have no extension archive in the local repository,
+	 * so they are not looked up in remote repositories again. See
+	 * {@link NegativeLookupCache}.
+	 */
+	@Parameter(property = "extensions.negativeCache", defaultValue = "true")
+	protected boolean negativeCache = true;
+
+	/**
+	 * How long in minutes to remember that a snapshot artifact has no extension
+	 * archive. Released artifacts are remembered forever.
+	 */
+	@Parameter(property = "extensions.negativeCacheTtl", defaultValue = "1440")
+	protected long negativeCacheTtl = 1440;
 	/**
 	 * Which groups can contain extensions. This can massively speed up dependency
 	 * by not needlessly contacting a Maven repository to determine if an artifact
@@ -192,8 +221,72 @@ public abstract class AbstractExtensionsMojo extends AbstractBaseExtensionsMojo
 	@Parameter(defaultValue = "true")
 	protected boolean processExtensionVersions;
 
+	/**
+	 * Directory in which to keep version processed archives between builds, so
+	 * that unchanged archives do not need to be processed again. Results are keyed
+	 * by the content of the source archive and the snapshot version suffix (i.e.
+	 * BUILD_NUMBER). If not set, no cache is used.
+	 */
+	@Parameter(property = "extensions.processedCacheDir")
+	protected File processedCacheDir;
+
+	/**
+	 * Maximum total size of {@link #processedCacheDir} in megabytes. The least
+	 * recently used results are evicted when this is exceeded.
+	 */
+	@Parameter(property = "extensions.processedCacheSize", defaultValue = "2048")
+	protected long processedCacheSize = 2048;
+
+	/**
+	 * Entries matching any of these patterns are already compressed (jars, zips,
+	 * images), so are added to the archive as is (STORED) rather than being
+	 * deflated again.
+	 */
+	@Parameter(property = "plugin-generator.store-patterns", defaultValue = "*.jar,*.zip,*.png,*.jpg,*.gif")
+	private String[] storePatterns;
+
+	/**
+	 * The deflate level (0-9, or -1 for the default) used for all entries that
+	 * are not stored.
+	 */
+	@Parameter(property = "plugin-generator.compression-level", defaultValue = "-1")
+	private int compressionLevel = -1;
+
+	/**
+	 * Skip building the archive if nothing that goes into it has changed since it
+	 * was last built (see {@link BuildFingerprint}).
+	 */
+	@Parameter(defaultValue = "true", property = "plugin-generator.incremental")
+	protected boolean incremental = true;
+
+	/**
+	 * Digest algorithms to calculate for the archive as well as MD5, e.g.
+	 * <code>SHA-256</code> and <code>SHA-512</code>. All are written to a JSON
+	 * checksum manifest next to the archive.
+	 */
+	@Parameter(property = "plugin-generator.checksums")
+	private String[] checksums;
+
+	/**
+	 * How to publish a built archive to the local store, or dependency jars to a
+	 * developer plugin's <code>lib</code> directory: <code>REFLINK</code> (a
+	 * copy-on-write clone), <code>LINK</code> (a hard link) or <code>COPY</code>.
+	 * When the file system does not support a clone or link, the next one is
+	 * used instead, except that a developer plugin's jars are copied rather than
+	 * linked when a clone is not possible.
+	 */
+	@Parameter(defaultValue = "REFLINK", property = "plugin-generator.publish-strategy")
+	protected FileLinks.Strategy publishStrategy = FileLinks.Strategy.REFLINK;
+
 	protected Set<String> artifactsDone = new HashSet<>();
 
+	private ProcessedArchiveRegistry processedArchives;
+
+	private final AtomicLong dependencyMapLockWait = new AtomicLong();
+	private DependencyMapCache dependencyMaps;
+
+	private NegativeLookupCache missingExtensions;
+
 	private void handleResult(ArtifactResult result)
 			throws MojoExecutionException, DependencyResolverException, ArtifactResolverException {
 
@@ -216,11 +309,90 @@ public abstract class AbstractExtensionsMojo extends AbstractBaseExtensionsMojo
 		}
 	}
 
+	/**
+	 * Get how entries of generated archives are compressed, as configured by
+	 * {@link #storePatterns} and {@link #compressionLevel}.
+	 *
+	 * @return compression policy
+	 */
+	protected CompressionPolicy getCompressionPolicy() {
+		return new CompressionPolicy(storePatterns, compressionLevel);
+	}
+
 	protected boolean isExclude(Artifact artifact) {
 		return artifact != null && artifact.getClassifier() != null && artifact.getClassifier().length() > 0
 				&& excludeClassifiers != null && excludeClassifiers.contains(artifact.getClassifier());
 	}
 
+	/**
+	 * Add the artifacts that may go into an archive to its fingerprint, along
+	 * with everything that decides whether and where each one goes in.
+	 *
+	 * @param fingerprint     fingerprint
+	 * @param artifacts       artifacts
+	 * @param versionMap      resolved versions
+	 * @param artifactMap     resolved files
+	 * @param coreVersionMap  versions provided by the core
+	 * @param appendFolderMap folders to add artifacts to
+	 */
+	protected void fingerprintArtifacts(BuildFingerprint fingerprint, List<Artifact> artifacts,
+			Map<String, String> versionMap, Map<String, File> artifactMap, Map<String, String> coreVersionMap,
+			Map<String, List<String>> appendFolderMap) {
+		fingerprint.add("append-folders", new TreeMap<>(appendFolderMap));
+		for (Artifact a : artifacts) {
+			String key = ResolveDependenciesMojo.makeKey(a);
+			fingerprint.add("artifact", key + " " + a.getBaseVersion() + " " + versionMap.get(key) + " "
+					+ coreVersionMap.containsKey(key) + " " + isExclude(a));
+			fingerprint.file(key, a.getFile());
+			fingerprint.file(key, artifactMap.get(key));
+		}
+	}
+
+	/**
+	 * Get the digest algorithms to calculate for an archive, which are always MD5
+	 * plus any others requested by {@link #checksums}.
+	 *
+	 * @return algorithms
+	 */
+	protected List<String> getChecksumAlgorithms() {
+		Set<String> algorithms = new LinkedHashSet<>();
+		algorithms.add("MD5");
+		if (checksums != null) {
+			for (String checksum : checksums) {
+				if (!checksum.trim().equals(""))
+					algorithms.add(checksum.trim().toUpperCase());
+			}
+		}
+		return new ArrayList<>(algorithms);
+	}
+
+	/**
+	 * Write the checksums of an archive, as calculated while it was written (see
+	 * {@link DigestingOutputStream}). The MD5 alone is written to an
+	 * <code>.md5</code> file, and all of them to a JSON checksum manifest.
+	 *
+	 * @param archive  archive
+	 * @param digests  digests of the archive
+	 * @param md5File  MD5 file
+	 * @param manifest checksum manifest file
+	 * @throws IOException on error
+	 */
+	protected void writeChecksums(File archive, Map<String, String> digests, File md5File, File manifest)
+			throws IOException {
+		String md5 = digests.get("MD5");
+		Files.writeString(md5File.toPath(), md5, StandardCharsets.UTF_8);
+		getLog().info("MD5 sum value is " + md5);
+
+		JsonObjectBuilder checksums = Json.createObjectBuilder();
+		for (Map.Entry<String, String> en : digests.entrySet()) {
+			checksums.add(en.getKey(), en.getValue());
+			if (!en.getKey().equals("MD5"))
+				getLog().info(en.getKey() + " sum value is " + en.getValue());
+		}
+		Files.writeString(manifest.toPath(), Json.createObjectBuilder().add("file", archive.getName())
+				.add("size", archive.length()).add("checksums", checksums).build().toString(), StandardCharsets.UTF_8);
+	}
+
 	protected boolean isProcessedGroup(Artifact artifact) {
 		if (groups == null || groups.isEmpty()) {
 			return DEFAULT_GROUPS.contains(artifact.getGroupId());
@@ -233,7 +405,110 @@ public abstract class AbstractExtensionsMojo extends AbstractBaseExtensionsMojo
 
 	protected void doCoordinate() throws MojoFailureException, MojoExecutionException, IllegalArgumentException,
 			DependencyResolverException, ArtifactResolverException {
+		for (ArtifactResult result : resolveCoordinate(coordinate)) {
+			handleResult(result);
+		}
+	}
 
+	/**
+	 * Resolve the extension archive of each artifact, then handle the results in
+	 * the same order as the artifacts. Resolution is done in parallel, using up to
+	 * {@link #resolveThreads} threads, as each usually involves at least one round
+	 * trip to a remote repository. Artifacts that fail to resolve are assumed not
+	 * to be extensions.
+	 *
+	 * @param artifacts artifacts
+	 * @return artifacts that were resolved and handled
+	 * @throws MojoExecutionException on error handling a result
+	 */
+	protected List<Artifact> resolveExtensionArchives(List<Artifact> artifacts) throws MojoExecutionException {
+		NegativeLookupCache missing = getMissingExtensions();
+		if (missing != null) {
+			List<Artifact> candidates = new ArrayList<>();
+			for (Artifact artifact : artifacts) {
+				if (!missing.isMissing(artifact.getGroupId(), artifact.getArtifactId(), artifact.getVersion()))
+					candidates.add(artifact);
+			}
+			artifacts = candidates;
+		}
+
+		List<Callable<List<ArtifactResult>>> tasks = new ArrayList<>();
+		for (Artifact artifact : artifacts) {
+			DefaultDependableCoordinate coordinate = new DefaultDependableCoordinate();
+			coordinate.setGroupId(artifact.getGroupId());
+			coordinate.setArtifactId(artifact.getArtifactId());
+			coordinate.setVersion(artifact.getVersion());
+			coordinate.setType("zip");
+			coordinate.setClassifier(EXTENSION_ARCHIVE);
+			tasks.add(() -> resolveCoordinate(coordinate));
+		}
+
+		ExecutorService executor = resolveThreads > 1 && tasks.size() > 1
+				? Executors.newFixedThreadPool(Math.min(resolveThreads, tasks.size()), r -> {
+					Thread t = new Thread(r, "ExtensionResolver");
+					t.setDaemon(true);
+					return t;
+				})
+				: null;
+		try {
+			List<Future<List<ArtifactResult>>> futures = new ArrayList<>();
+			for (Callable<List<ArtifactResult>> task : tasks) {
+				if (executor == null) {
+					FutureTask<List<ArtifactResult>> future = new FutureTask<>(task);
+					future.run();
+					futures.add(future);
+				} else
+					futures.add(executor.submit(task));
+			}
+
+			List<Artifact> resolved = new ArrayList<>();
+			for (int i = 0; i < futures.size(); i++) {
+				Artifact artifact = artifacts.get(i);
+				try {
+					for (ArtifactResult result : futures.get(i).get()) {
+						handleResult(result);
+					}
+					resolved.add(artifact);
+				} catch (ExecutionException ee) {
+					Throwable cause = ee.getCause();
+					if (cause instanceof MojoFailureException || cause instanceof DependencyResolverException
+							|| cause instanceof ArtifactResolverException) {
+						getLog().warn("Failed to process " + artifact + ", assuming it's not an extension. "
+								+ cause.getMessage());
+						getLog().debug(cause);
+						if (missing != null
+								&& NegativeLookupCache.isNotFound(cause, artifact.getGroupId(), artifact.getArtifactId()))
+							missing.setMissing(artifact.getGroupId(), artifact.getArtifactId(), artifact.getVersion());
+					} else if (cause instanceof MojoExecutionException)
+						throw (MojoExecutionException) cause;
+					else
+						throw new MojoExecutionException("Failed to resolve " + artifact + ".", cause);
+				} catch (DependencyResolverException | ArtifactResolverException e) {
+					getLog().warn("Failed to process " + artifact + ", assuming it's not an extension. " + e.getMessage());
+					getLog().debug(e);
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+					throw new MojoExecutionException("Interrupted resolving extensions.", e);
+				}
+			}
+			return resolved;
+		} finally {
+			if (executor != null)
+				executor.shutdownNow();
+		}
+	}
+
+	/**
+	 * Resolve a coordinate, returning the results to be handled. This does not
+	 * use or change any state of this object, so may be called from any thread.
+	 *
+	 * @param coordinate coordinate
+	 * @return results
+	 */
+	protected List<ArtifactResult> resolveCoordinate(DependableCoordinate coordinate) throws MojoFailureException,
+			IllegalArgumentException, DependencyResolverException, ArtifactResolverException {
+		List<ArtifactResult> results = new ArrayList<>();
+		NegativeLookupCache missing = getMissingExtensions();
 		ArtifactRepositoryPolicy always = new ArtifactRepositoryPolicy(true,
 				updatePolicy == null ? ArtifactRepositoryPolicy.UPDATE_POLICY_INTERVAL + ":60" : updatePolicy, 
 				checksumPolicy == null ? ArtifactRepositoryPolicy.CHECKSUM_POLICY_IGNORE : checksumPolicy );
@@ -272,25 +547,45 @@ public abstract class AbstractExtensionsMojo extends AbstractBaseExtensionsMojo
 				 * dependencies that also have an extension zip
 				 */
 				if (EXTENSION_ARCHIVE.equals(coordinate.getClassifier())) {
-					if (isProcessedGroup(result.getArtifact())) {
-						getLog().debug("Resolving " + toCoords(result.getArtifact()) + " with transitive dependencies");
+					Artifact dependency = result.getArtifact();
+					if (isProcessedGroup(dependency) && (missing == null || !missing.isMissing(dependency.getGroupId(),
+							dependency.getArtifactId(), dependency.getVersion()))) {
+						getLog().debug("Resolving " + toCoords(dependency) + " with transitive dependencies");
 						try {
-							handleResult(artifactResolver.resolveArtifact(buildingRequest,
-									toExtensionCoordinate(result.getArtifact())));
+							results.add(artifactResolver.resolveArtifact(buildingRequest,
+									toExtensionCoordinate(dependency)));
 						} catch (ArtifactResolverException arfe) {
-							getLog().debug("Failed to resolve " + result.getArtifact().getArtifactId()
-									+ " as an extension, assuming it isn't one");
+							getLog().warn("Failed to resolve " + dependency.getArtifactId()
+									+ " as an extension, assuming it isn't one. " + arfe.getMessage());
+							getLog().debug(arfe);
+							if (missing != null && NegativeLookupCache.isNotFound(arfe, dependency.getGroupId(),
+									dependency.getArtifactId()))
+								missing.setMissing(dependency.getGroupId(), dependency.getArtifactId(),
+										dependency.getVersion());
 						}
 					}
 				} else {
-					handleResult(result);
+					results.add(result);
 				}
 			}
 		} else {
 			getLog().debug("Resolving " + coordinate);
-			handleResult(artifactResolver.resolveArtifact(buildingRequest, toArtifactCoordinate(coordinate)));
+			results.add(artifactResolver.resolveArtifact(buildingRequest, toArtifactCoordinate(coordinate)));
 		}
+		return results;
+	}
 
+	/**
+	 * Get the record of artifacts known not to have extension archives, or
+	 * <code>null</code> if it is not being used.
+	 *
+	 * @return missing extensions
+	 */
+	protected synchronized NegativeLookupCache getMissingExtensions() {
+		if (negativeCache && missingExtensions == null)
+			missingExtensions = new NegativeLookupCache(new File(session.getLocalRepository().getBasedir()),
+					TimeUnit.MINUTES.toMillis(negativeCacheTtl), session.isOffline(), getLog());
+		return missingExtensions;
 	}
 
 	private String toCoords(Artifact artifact) {
@@ -400,14 +695,58 @@ public abstract class AbstractExtensionsMojo extends AbstractBaseExtensionsMojo
 		return layout;
 	}
 
-	protected void runIfNeedVersionProcessedArchive(Artifact artifact, Path target, IORunnable r, FileTime sourceTime)
+	@Override
+	protected void afterExecute() {
+		super.afterExecute();
+		if (processedArchives != null)
+			getLog().info(processedArchives.toString());
+		if (missingExtensions != null)
+			getLog().info(missingExtensions.toString());
+		if (dependencyMaps != null) {
+			getLog().info(dependencyMaps.toString());
+			getLog().info(String.format("Waited %d ms for dependency map locks.",
+					TimeUnit.NANOSECONDS.toMillis(dependencyMapLockWait.get())));
+		}
+	}
+
+	/**
+	 * Read a dependency map written by {@link ResolveDependenciesMojo}, or get it
+	 * from those already read in this session. The time spent waiting for it to be
+	 * written is reported after execution.
+	 *
+	 * @param file file
+	 * @return map
+	 * @throws IOException on error
+	 */
+	protected DependencyMap readDependencyMap(File file) throws IOException {
+		if (dependencyMaps == null)
+			dependencyMaps = DependencyMapCache.get(session);
+		return dependencyMaps.read(file.toPath(), dependencyMapLockWait);
+	}
+
+	protected void runIfNeedVersionProcessedArchive(Artifact artifact, Path source, Path target, IORunnable processor)
 			throws IOException {
-		if (copyOncePerRuntime) {
-			var other = lastVersionProcessed.get(artifact);
-			if (other == null) {
-				lastVersionProcessed.put(artifact, target);
-				r.run();
+		FileTime sourceTime = Files.getLastModifiedTime(source);
+		IORunnable r = () -> {
+			/* Target may be a link to a cached result, so never write to it in place */
+			Files.deleteIfExists(target);
+			if (processedCacheDir == null) {
+				processor.run();
 			} else {
+				var cache = new ProcessedArchiveCache(processedCacheDir.toPath(), processedCacheSize * 1024 * 1024,
+						getLog());
+				var key = cache.key(artifact, source, getSnapshotVersionSuffix());
+				if (!cache.restore(key, target)) {
+					processor.run();
+					cache.store(key, target);
+				}
+			}
+		};
+		if (copyOncePerRuntime) {
+			if (processedArchives == null)
+				processedArchives = ProcessedArchiveRegistry.get(session);
+			var other = processedArchives.process(artifact, target, r);
+			if (other != null && !other.equals(target)) {
 				getLog().debug(String.format(
 						"Skipping processing of %s, we have already processed it once this runtime, just linking from %s to %s.",
 						artifact, other, target));
@@ -421,48 +760,92 @@ public abstract class AbstractExtensionsMojo extends AbstractBaseExtensionsMojo
 		}
 	}
 
-	protected void processVersionsInExtensionArchives(Artifact artifact, ZipInputStream zis, ZipOutputStream zos)
+	/**
+	 * Rewrite an extension archive, injecting the snapshot version suffix into any
+	 * extension jars inside it. Only the entries that need to change are
+	 * decompressed and compressed again, everything else is copied from the
+	 * source archive as is. Rewritten entries keep their original compression
+	 * method. If version processing is off or the artifact is not an extension
+	 * archive, the source is copied to the target unchanged.
+	 *
+	 * @param artifact artifact
+	 * @param source   source archive
+	 * @param target   target archive
+	 * @throws IOException on error
+	 */
+	protected void processVersionsInExtensionArchives(Artifact artifact, Path source, Path target)
 			throws IOException {
 		if (processExtensionVersions && "extension-archive".equals(artifact.getClassifier())
 				&& "zip".equals(artifact.getType())) {
 			AtomicInteger counter = new AtomicInteger();
-			ZipEntry zipEntry = zis.getNextEntry();
-			while (zipEntry != null) {
-				getLog().debug(String.format("  Zip entry: %s (dir: %s)", zipEntry.getName(), zipEntry.isDirectory()));
-				if (zipEntry.isDirectory()) {
-					zos.putNextEntry(new ZipEntry(zipEntry.getName()));
-					zos.closeEntry();
-				} else if (zipEntry.getName().toLowerCase().endsWith(".jar") && isPotentialExtensions(FileUtils.getFilename(zipEntry.getName())) ) {
-					zos.putNextEntry(new ZipEntry(zipEntry.getName()));
-					try (var in = new ZipInputStream(new FilterInputStream(zis) {
-						@Override
-						public void close() throws IOException {
+			/* Processed nested jars, which must be kept until the archive is written */
+			List<Path> processed = new ArrayList<>();
+			Path tmpDir = target.toAbsolutePath().getParent();
+			try (var zis = new ArchiveReader(source);
+					var zos = new ArchiveWriter(target, CompressionPolicy.DEFLATE_ALL)) {
+				for (var zipEntry : zis.getEntries()) {
+					getLog().debug(String.format("  Zip entry: %s (dir: %s)", zipEntry.getName(), zipEntry.isDirectory()));
+					if (!zipEntry.isDirectory() && zipEntry.getName().toLowerCase().endsWith(".jar")
+							&& isPotentialExtensions(FileUtils.getFilename(zipEntry.getName()))) {
+						/* A compressed nested jar is inflated to a file, so it can be read like any other */
+						Path spooled = null;
+						ArchiveReader in;
+						try {
+							if (zipEntry.getMethod() == ZipEntry.STORED) {
+								/* Read the nested jar in place */
+								in = zis.openNested(zipEntry);
+							} else {
+								spooled = Files.createTempFile(tmpDir, "nested", ".jar");
+								try (var jin = zis.getInputStream(zipEntry)) {
+									Files.copy(jin, spooled, StandardCopyOption.REPLACE_EXISTING);
+								}
+								in = new ArchiveReader(spooled);
+							}
+						} catch (IOException ioe) {
+							if (spooled != null)
+								Files.delete(spooled);
+							if (!(ioe instanceof ZipException))
+								throw ioe;
+							zos.raw(zis, zipEntry);
+							getLog().debug(String.format("    Copied %s, not a valid jar.", zipEntry.getName()));
+							continue;
 						}
-					}) ; var out = new ZipOutputStream(new FilterOutputStream(zos) {
-						@Override
-						public void close() throws IOException {
+						try (in) {
+							if (getExtensionVersion(in) == null) {
+								zos.raw(zis, zipEntry);
+								getLog().debug(String.format("    Copied %s, not an extension.", zipEntry.getName()));
+							} else {
+								getLog().debug("    Process versions in inner jar artifact of " + artifact.getArtifactId()
+										+ " from " + zipEntry.getName());
+								Path jar = Files.createTempFile(tmpDir, "processed", ".jar");
+								processed.add(jar);
+								try (var jos = new ArchiveWriter(jar, CompressionPolicy.DEFLATE_ALL)) {
+									processVersionsInJarFile(artifact, counter, in, jos);
+								}
+								zos.file(zipEntry.getName(), jar.toFile(), zipEntry.getMethod());
+								getLog().debug("    Processed versions in inner jar artifact of " + artifact.getArtifactId()
+										+ " from " + zipEntry.getName());
+							}
+						} finally {
+							if (spooled != null)
+								Files.delete(spooled);
 						}
-					}) ) {
-						getLog().debug("    Process versions in inner jar artifact of " + artifact.getArtifactId() + " from " + zipEntry.getName());
-						processVersionsInJarFile(artifact, counter, in, out);
-						getLog().debug("    Processed versions in inner jar artifact of " + artifact.getArtifactId() + " from " + zipEntry.getName());
+					} else {
+						zos.raw(zis, zipEntry);
+						getLog().debug(String.format("    Copied %s.", zipEntry.getName()));
 					}
-					zos.closeEntry();
-				} else {
-					zos.putNextEntry(new ZipEntry(zipEntry.getName()));
-					zis.transferTo(zos);
-					zos.closeEntry();
-					getLog().debug(String.format("    Copied %s.", zipEntry.getName()));
 				}
-
-				zipEntry = zis.getNextEntry();
+			} finally {
+				for (Path jar : processed)
+					Files.deleteIfExists(jar);
 			}
-			zos.flush();
-			zis.closeEntry();
 
 			/* Re-pack the extension zip */
 			if (counter.get() == 0)
 				getLog().debug(String.format("No jars processed in %s", artifact));
+		} else {
+			/* Nothing to process, the target is an exact copy of the source */
+			Files.copy(source, target, StandardCopyOption.REPLACE_EXISTING);
 		}
 	}
 
@@ -476,73 +859,83 @@ public abstract class AbstractExtensionsMojo extends AbstractBaseExtensionsMojo
 			return false;
 	}
 
-	public void processVersionsInJarFile(Artifact artifact, AtomicInteger counter, ZipInputStream zis,
-			ZipOutputStream zos) {
+	/**
+	 * Rewrite a jar file, injecting the snapshot version suffix if it is an
+	 * extension jar. Only the entries that need to change are decompressed and
+	 * compressed again, everything else is copied from the source jar as is.
+	 *
+	 * @param artifact artifact
+	 * @param counter  incremented if the jar was an extension
+	 * @param source   source jar
+	 * @param target   target jar
+	 * @throws IOException on error
+	 */
+	public void processVersionsInJarFile(Artifact artifact, AtomicInteger counter, Path source, Path target)
+			throws IOException {
+		try (var zis = new ArchiveReader(source); var zos = new ArchiveWriter(target, CompressionPolicy.DEFLATE_ALL)) {
+			processVersionsInJarFile(artifact, counter, zis, zos);
+		}
+	}
+
+	protected void processVersionsInJarFile(Artifact artifact, AtomicInteger counter, ArchiveReader zis,
+			ArchiveWriter zos) {
 		/*
 		 * We have something that is possibly an extension jar. So we peek inside, and
 		 * see if there is an extension.def resource.
 		 */
 		try {
-			String jarExtensionVersion = null;
+			String jarExtensionVersion = getExtensionVersion(zis);
 			String newJarExtensionVersion = null;
-			ZipEntry zipEntry = zis.getNextEntry();
-			while (zipEntry != null) {
+			if (jarExtensionVersion != null) {
+				/* This is an extension, inject the build number */
+				newJarExtensionVersion = getVersion(true, jarExtensionVersion);
+				counter.incrementAndGet();
+			}
+
+			for (var zipEntry : zis.getEntries()) {
 				getLog().debug(String.format("  Jar entry: %s (dir: %s)", zipEntry.getName(), zipEntry.isDirectory()));
 				if (zipEntry.isDirectory()) {
-					zos.putNextEntry(new ZipEntry(zipEntry.getName()));
-					zos.closeEntry();
+					zos.raw(zis, zipEntry);
 				} else if (zipEntry.getName().equals("META-INF/MANIFEST.MF")) {
 					/* There is a MANIFEST.MF, is it a hypersocket extension? */
-					Manifest mf = new Manifest(zis);
-					jarExtensionVersion = mf.getMainAttributes().getValue("X-Extension-Version");
-					if (jarExtensionVersion != null) {
-
-						/* This is an extension, inject the build number */
-						newJarExtensionVersion = getVersion(true, jarExtensionVersion);
+					Manifest mf;
+					try (var in = zis.getInputStream(zipEntry)) {
+						mf = new Manifest(in);
+					}
+					if (newJarExtensionVersion != null) {
 						mf.getMainAttributes().putValue("X-Extension-Version", newJarExtensionVersion);
 						getLog().debug(String.format("    Adjusted version in %s from %s to %s.", zipEntry.getName(),
 								jarExtensionVersion, newJarExtensionVersion));
 
 					}
 					/* Rewrite the manifest */
-					zos.putNextEntry(new ZipEntry(zipEntry.getName()));
-					mf.write(zos);
-					zos.closeEntry();
+					zos.content(zipEntry.getName(), zipEntry.getMethod(), mf::write);
 				} else if (newJarExtensionVersion != null && zipEntry.getName().equals("plugin.properties")) {
 
 					/* Look for extension properties to update */
-					Properties pluginProperties = new Properties();
-					pluginProperties.load(zis);
+					Properties pluginProperties = loadProperties(zis, zipEntry);
 					pluginProperties.put("plugin.version", newJarExtensionVersion);
 					getLog().debug(String.format("    Adjusted version in %s from %s to %s.", zipEntry.getName(),
 							jarExtensionVersion, newJarExtensionVersion));
 
-					zos.putNextEntry(new ZipEntry(zipEntry.getName()));
-					pluginProperties.store(zos, "Plugin Properties for " + artifact.getArtifactId());
-					zos.closeEntry();
+					zos.content(zipEntry.getName(), zipEntry.getMethod(),
+							out -> pluginProperties.store(out, "Plugin Properties for " + artifact.getArtifactId()));
 				} else if (newJarExtensionVersion != null && zipEntry.getName().equals("extension.def")) {
 
 					/* Look for extension def to update */
-					Properties extProperties = new Properties();
-					extProperties.load(zis);
+					Properties extProperties = loadProperties(zis, zipEntry);
 					extProperties.put("extension.version", newJarExtensionVersion);
 					getLog().debug(String.format("    Adjusted version in %s from %s to %s.", zipEntry.getName(),
 							jarExtensionVersion, newJarExtensionVersion));
 
-					zos.putNextEntry(new ZipEntry(zipEntry.getName()));
-					extProperties.store(zos, "Extension Properties for " + artifact.getArtifactId());
-					zos.closeEntry();
+					zos.content(zipEntry.getName(), zipEntry.getMethod(),
+							out -> extProperties.store(out, "Extension Properties for " + artifact.getArtifactId()));
 				} else if (newJarExtensionVersion != null
 						&& zipEntry.getName().matches("META-INF/maven/.*/pom\\.xml")) {
 					DocumentBuilderFactory docBuilderFactory = DocumentBuilderFactory.newInstance();
-					try {
+					try (var in = zis.getInputStream(zipEntry)) {
 						DocumentBuilder docBuilder = docBuilderFactory.newDocumentBuilder();
-						Document doc = docBuilder.parse(new FilterInputStream(zis) {
-							@Override
-							public void close() throws IOException {
-								// DocumentBuilder.parse() is dumb, it closes the stream passed it
-							}
-						});
+						Document doc = docBuilder.parse(in);
 						doc.getDocumentElement().getElementsByTagName("version").item(0)
 								.setTextContent(newJarExtensionVersion);
 
@@ -551,37 +944,32 @@ public abstract class AbstractExtensionsMojo extends AbstractBaseExtensionsMojo
 						transformer.setOutputProperty(OutputKeys.INDENT, "yes");
 						transformer.setOutputProperty("{http://xml.apache.org/xslt}indent-amount", "4");
 						DOMSource source = new DOMSource(doc);
-						zos.putNextEntry(new ZipEntry(zipEntry.getName()));
 						getLog().debug(String.format("    Adjusted version in %s from %s to %s.", zipEntry.getName(),
 								jarExtensionVersion, newJarExtensionVersion));
-						StreamResult result = new StreamResult(zos);
-						transformer.transform(source, result);
-						zos.closeEntry();
+						zos.content(zipEntry.getName(), zipEntry.getMethod(), out -> {
+							try {
+								transformer.transform(source, new StreamResult(out));
+							} catch (TransformerException te) {
+								throw new IOException("Failed to write " + zipEntry.getName(), te);
+							}
+						});
 					} catch (Exception ioe) {
 						throw new IllegalStateException("Failed to rewrite pom.properties");
 					}
 				} else if (newJarExtensionVersion != null
 						&& zipEntry.getName().matches("META-INF/maven/.*/pom\\.properties")) {
-					Properties properties = new Properties();
-					properties.load(zis);
+					Properties properties = loadProperties(zis, zipEntry);
 
 					getLog().debug(String.format("    Adjusted version in %s from %s to %s.", zipEntry.getName(),
 							jarExtensionVersion, newJarExtensionVersion));
 					properties.put("version", newJarExtensionVersion);
-					zos.putNextEntry(new ZipEntry(zipEntry.getName()));
-					properties.store(zos, "Processed by logonbox-plugin-generator");
-					zos.closeEntry();
+					zos.content(zipEntry.getName(), zipEntry.getMethod(),
+							out -> properties.store(out, "Processed by logonbox-plugin-generator"));
 				} else {
-					zos.putNextEntry(new ZipEntry(zipEntry.getName()));
-					zis.transferTo(zos);
-					zos.closeEntry();
+					zos.raw(zis, zipEntry);
 					getLog().debug(String.format("    Copied %s.", zipEntry.getName()));
 				}
-
-				zipEntry = zis.getNextEntry();
 			}
-			zis.closeEntry();
-			zos.flush();
 
 			if (newJarExtensionVersion == null) {
 				/* There is not, skip this one */
@@ -593,6 +981,23 @@ public abstract class AbstractExtensionsMojo extends AbstractBaseExtensionsMojo
 		}
 	}
 
+	private String getExtensionVersion(ArchiveReader jar) throws IOException {
+		var mfEntry = jar.getEntry("META-INF/MANIFEST.MF");
+		if (mfEntry == null)
+			return null;
+		try (var in = jar.getInputStream(mfEntry)) {
+			return new Manifest(in).getMainAttributes().getValue("X-Extension-Version");
+		}
+	}
+
+	private Properties loadProperties(ArchiveReader jar, ArchiveReader.Entry entry) throws IOException {
+		Properties properties = new Properties();
+		try (var in = jar.getInputStream(entry)) {
+			properties.load(in);
+		}
+		return properties;
+	}
+
 	/**
 	 * @return {@link #skip}
 	 */
@@ -21,12 +21,6 @@ import java.io.File;
 import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
-import java.io.ObjectInputStream;
-import java.io.RandomAccessFile;
-import java.nio.channels.Channels;
-import java.nio.channels.FileChannel;
-import java.nio.channels.FileLock;
-import java.nio.channels.OverlappingFileLockException;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
@@ -115,7 +109,6 @@ public abstract class AbstractPF4JPluginMojo extends AbstractExtensionsMojo {
 
 	protected List<Artifact> extraArtifacts = new ArrayList<>();
 
-	@SuppressWarnings("unchecked")
 	protected void onExecute() throws MojoExecutionException, MojoFailureException {
 		if (skipPoms && "pom".equals(project.getPackaging())) {
 			getLog().info("Skipping POM project " + project.getName());
@@ -125,8 +118,8 @@ public abstract class AbstractPF4JPluginMojo extends AbstractExtensionsMojo {
 		getLog().info(project.getBasedir().getAbsolutePath());
 		getLog().info(project.getExecutionProject().getBasedir().getAbsolutePath());
 
-		File allDependenciesFile = new File(project.getBasedir().getParentFile(),
-				resolvedDependenciesProject + File.separator + "target" + File.separator + "dependencies.ser");
+		File allDependenciesFile = DependencyMap.locate(new File(project.getBasedir().getParentFile(),
+				resolvedDependenciesProject + File.separator + "target"));
 
 		getLog().info("Using all dependencies file " + allDependenciesFile.getAbsolutePath());
 
@@ -167,73 +160,54 @@ public abstract class AbstractPF4JPluginMojo extends AbstractExtensionsMojo {
 				coordinate = new DefaultDependableCoordinate();
 			}
 
-			try (@SuppressWarnings("resource")
-			FileChannel channel = new RandomAccessFile(allDependenciesFile, "rw").getChannel()) {
-				InputStream in = Channels.newInputStream(channel);
-				FileLock lock = getLock(channel);
-				try {
+			DependencyMap allDependencies = readDependencyMap(allDependenciesFile);
+			Map<String, String> versionMap = allDependencies.versions();
+			Map<String, File> artifactMap = allDependencies.files();
 
-					ObjectInputStream obj = new ObjectInputStream(in);
-					Map<String, String> versionMap = (Map<String, String>) obj.readObject();
-					Map<String, File> artifactMap = (Map<String, File>) obj.readObject();
-
-					Map<String, String> coreVersionMap = new HashMap<String, String>();
-
-					if (dependencies != null) {
-						for (String dependency : dependencies) {
-
-							File dependencyFile = new File(project.getBasedir().getParentFile(),
-									dependency + File.separator + "target" + File.separator + "dependencies.ser");
-							if (dependencyFile.exists()) {
-
-								try (@SuppressWarnings("resource")
-								FileChannel channel2 = new RandomAccessFile(dependencyFile, "rw").getChannel()) {
-									InputStream in2 = Channels.newInputStream(channel2);
-									FileLock lock2 = getLock(channel2);
-									try {
-										ObjectInputStream obj2 = new ObjectInputStream(in2);
-										coreVersionMap.putAll((Map<String, String>) obj2.readObject());
-									} finally {
-										lock2.release();
-									}
-								}
-							} else {
-								getLog().info(dependencyFile.getAbsolutePath() + " does not exist");
-							}
-						}
-					}
+			List<Map<String, String>> coreVersionMaps = new ArrayList<>();
 
-					Map<String, List<String>> appendFolderMap = new HashMap<String, List<String>>();
+			if (dependencies != null) {
+				for (String dependency : dependencies) {
+
+					File dependencyFile = DependencyMap.locate(new File(project.getBasedir().getParentFile(),
+							dependency + File.separator + "target"));
+					if (dependencyFile.exists()) {
+						coreVersionMaps.add(readDependencyMap(dependencyFile).versions());
+					} else {
+						getLog().info(dependencyFile.getAbsolutePath() + " does not exist");
+					}
+				}
+			}
 
-					if (appendFolders != null) {
-						for (String af : appendFolders) {
-							int idx = af.indexOf('=');
-							String artifactId = af.substring(0, idx);
-							String folder = af.substring(idx + 1);
+			Map<String, List<String>> appendFolderMap = new HashMap<String, List<String>>();
 
-							getLog().info("Will append folder " + folder + " to artifact " + artifactId);
+			if (appendFolders != null) {
+				for (String af : appendFolders) {
+					int idx = af.indexOf('=');
+					String artifactId = af.substring(0, idx);
+					String folder = af.substring(idx + 1);
 
-							if (!appendFolderMap.containsKey(artifactId)) {
-								appendFolderMap.put(artifactId, new ArrayList<String>());
-							}
+					getLog().info("Will append folder " + folder + " to artifact " + artifactId);
 
-							appendFolderMap.get(artifactId).add(folder);
-						}
+					if (!appendFolderMap.containsKey(artifactId)) {
+						appendFolderMap.put(artifactId, new ArrayList<String>());
 					}
 
-					if (ignores != null) {
-						for (String ignore : ignores) {
-							coreVersionMap.put(ignore, "IGNORED");
-							versionMap.put(ignore, "IGNORED");
-						}
-					}
-					
-					doPF4JPlugin(artifactMap, versionMap, coreVersionMap, loadProperties(project.getBasedir()), appendFolderMap);
+					appendFolderMap.get(artifactId).add(folder);
+				}
+			}
 
-				} finally {
-					lock.release();
+			if (ignores != null) {
+				Map<String, String> ignored = new HashMap<>();
+				for (String ignore : ignores) {
+					ignored.put(ignore, "IGNORED");
 				}
+				coreVersionMaps.add(ignored);
+				versionMap = DependencyMap.layered(versionMap, ignored);
 			}
+			Map<String, String> coreVersionMap = DependencyMap.layered(coreVersionMaps);
+			
+			doPF4JPlugin(artifactMap, versionMap, coreVersionMap, loadProperties(project.getBasedir()), appendFolderMap);
 
 		} catch (Exception e) {
 			getLog().error(e);
@@ -361,20 +335,6 @@ public abstract class AbstractPF4JPluginMojo extends AbstractExtensionsMojo {
 	protected abstract void doPF4JPlugin(Map<String, File> artifactMap, Map<String, String> versionMap,
 			Map<String, String> coreVersionMap, Properties properties, Map<String, List<String>> appendFolderMap) throws IOException;
 
-	public FileLock getLock(FileChannel channel) throws IOException {
-		while (true) {
-			try {
-				return channel.tryLock();
-			} catch (OverlappingFileLockException ofl) {
-				try {
-					Thread.sleep(100);
-				} catch (InterruptedException e) {
-					throw new IOException("Interrupted.", e);
-				}
-			}
-		}
-	}
-
 	@Override
 	protected void doHandleResult(ArtifactResult result)
 			throws MojoExecutionException, DependencyResolverException, ArtifactResolverException, IOException {
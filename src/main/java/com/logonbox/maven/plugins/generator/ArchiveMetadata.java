@@ -0,0 +1,334 @@
+package com.logonbox.maven.plugins.generator;
+
+import java.io.ByteArrayInputStream;
+import java.io.Closeable;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.Properties;
+import java.util.jar.Manifest;
+import java.util.regex.Pattern;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+
+import javax.xml.parsers.DocumentBuilderFactory;
+
+import org.w3c.dom.Document;
+
+/**
+ * Everything {@link Plugins} needs to know about a plugin or extension archive,
+ * gathered in a single pass over the archive. That is its
+ * <code>plugin.properties</code>, <code>extension.def</code>, manifest and Maven
+ * <code>pom.xml</code>, along with the same for any jars nested inside it.
+ * <p>
+ * When the archive is a file, only its central directory and the entries of
+ * interest are read, and nested jars are only looked at if a query needs them.
+ * Nested jars that are stored uncompressed (as they are in archives made by
+ * this plugin) are read the same way, in place, using their own central
+ * directory. The archive must then be closed after use. When the archive is a
+ * stream, it is scanned once from start to end.
+ */
+public final class ArchiveMetadata implements Closeable {
+
+	private static final Pattern POM = Pattern.compile(".*META-INF/maven/.*/pom\\.xml");
+
+	private interface Loader {
+		ArchiveMetadata load() throws IOException;
+	}
+
+	private static final class Nested {
+		private final String name;
+		private Loader loader;
+		private ArchiveMetadata metadata;
+
+		Nested(String name, Loader loader) {
+			this.name = name;
+			this.loader = loader;
+		}
+
+		Nested(String name, ArchiveMetadata metadata) {
+			this.name = name;
+			this.metadata = metadata;
+		}
+
+		/* Not an archive (or not a readable one) if null */
+		ArchiveMetadata get() {
+			if (loader != null) {
+				try {
+					metadata = loader.load();
+				} catch (IOException | RuntimeException e) {
+				}
+				loader = null;
+			}
+			return metadata;
+		}
+	}
+
+	private final List<Nested> nested = new ArrayList<>();
+	private final List<Closeable> resources = new ArrayList<>();
+	private String firstEntry;
+	private Properties pluginProperties;
+	private Properties extensionProperties;
+	private boolean rootExtensionDef;
+	private Manifest manifest;
+	private byte[] pom;
+
+	private ArchiveMetadata() {
+	}
+
+	/**
+	 * Read the metadata of an archive file. Only the central directory and the
+	 * entries of interest are read.
+	 *
+	 * @param path path
+	 * @return metadata
+	 * @throws IOException on error
+	 */
+	public static ArchiveMetadata of(Path path) throws IOException {
+		return of(new ArchiveReader(path));
+	}
+
+	/**
+	 * Read the metadata of an archive. The reader is closed when the metadata is
+	 * closed.
+	 *
+	 * @param reader reader
+	 * @return metadata
+	 * @throws IOException on error
+	 */
+	static ArchiveMetadata of(ArchiveReader reader) throws IOException {
+		ArchiveMetadata md = new ArchiveMetadata();
+		md.resources.add(reader);
+		try {
+			for (ArchiveReader.Entry entry : reader.getEntries()) {
+				String name = entry.getName();
+				if (md.firstEntry == null)
+					md.firstEntry = name;
+				if (md.isOfInterest(name)) {
+					try (InputStream in = reader.getInputStream(entry)) {
+						md.entry(name, in);
+					}
+				} else if (name.endsWith(".jar")) {
+					md.nested.add(new Nested(name, () -> {
+						if (entry.getMethod() == ZipEntry.STORED)
+							return of(reader.openNested(entry));
+						try (InputStream in = reader.getInputStream(entry)) {
+							return scan(in, true);
+						}
+					}));
+				}
+			}
+		} catch (IOException | RuntimeException e) {
+			md.close();
+			throw e;
+		}
+		return md;
+	}
+
+	/**
+	 * Read the metadata of an archive stream in a single pass. The stream is not
+	 * closed.
+	 *
+	 * @param in     stream
+	 * @param nested whether to also read nested jars
+	 * @return metadata
+	 * @throws IOException on error
+	 */
+	public static ArchiveMetadata scan(InputStream in, boolean nested) throws IOException {
+		ArchiveMetadata md = new ArchiveMetadata();
+		ZipInputStream z = new ZipInputStream(new FilterInputStream(in) {
+			@Override
+			public void close() {
+				/* The caller owns the stream */
+			}
+		});
+		try (z) {
+			ZipEntry en;
+			while ((en = z.getNextEntry()) != null) {
+				String name = en.getName();
+				if (md.firstEntry == null)
+					md.firstEntry = name;
+				if (md.isOfInterest(name)) {
+					md.entry(name, z);
+				} else if (nested && name.endsWith(".jar")) {
+					ArchiveMetadata inner;
+					try {
+						inner = scan(z, true);
+					} catch (IOException ioe) {
+						inner = null;
+					}
+					md.nested.add(new Nested(name, inner));
+				}
+			}
+		}
+		return md;
+	}
+
+	/**
+	 * Get the <code>plugin.properties</code> in the root of this archive.
+	 *
+	 * @return plugin properties
+	 */
+	public Optional<Properties> getPluginProperties() {
+		return Optional.ofNullable(pluginProperties);
+	}
+
+	/**
+	 * Get the first <code>extension.def</code> found in this archive (either in
+	 * the root or a folder), or failing that, in the first nested jar that has
+	 * one.
+	 *
+	 * @return extension properties
+	 */
+	public Optional<Properties> getExtensionProperties() {
+		if (extensionProperties != null)
+			return Optional.of(extensionProperties);
+		for (Nested n : nested) {
+			ArchiveMetadata md = n.get();
+			if (md != null) {
+				Optional<Properties> p = md.getExtensionProperties();
+				if (p.isPresent())
+					return p;
+			}
+		}
+		return Optional.empty();
+	}
+
+	/**
+	 * Get the <code>Implementation-Version</code> from the manifest of this
+	 * archive if it is an extension jar (i.e. has an <code>extension.def</code>
+	 * in its root), or failing that of the first nested jar that is.
+	 *
+	 * @return extension version
+	 */
+	public Optional<String> getExtensionVersion() {
+		if (rootExtensionDef && manifest != null) {
+			String v = manifest.getMainAttributes().getValue("Implementation-Version");
+			if (v != null)
+				return Optional.of(v);
+		}
+		for (Nested n : nested) {
+			ArchiveMetadata md = n.get();
+			if (md != null) {
+				Optional<String> v = md.getExtensionVersion();
+				if (v.isPresent())
+					return v;
+			}
+		}
+		return Optional.empty();
+	}
+
+	/**
+	 * Get the Maven <code>pom.xml</code> of the extension. This is taken from this
+	 * archive if it has both an <code>extension.def</code> and a
+	 * <code>pom.xml</code>, otherwise from nested jars whose names start with the
+	 * name of the first folder in this archive (i.e. an extension zip's jar for
+	 * the extension itself).
+	 *
+	 * @return pom
+	 */
+	public Optional<Document> getMavenPom() {
+		String extName = firstEntry;
+		if (extName != null) {
+			while (extName.startsWith("/"))
+				extName = extName.substring(1);
+			extName = extName.split("/")[0];
+		}
+		return findPom(Pattern.compile(".*/" + Pattern.quote(extName == null ? "" : extName) + ".*\\.jar"));
+	}
+
+	/**
+	 * Get the coordinates and description from the extension's Maven
+	 * <code>pom.xml</code> (see {@link #getMavenPom()}). Keys are
+	 * <code>artifactId</code>, <code>name</code>, <code>description</code> and
+	 * <code>version</code>, where present.
+	 *
+	 * @return maven properties
+	 */
+	public Optional<Properties> getMavenProperties() {
+		return getMavenPom().map(doc -> {
+			var p = new Properties();
+			putIfNotNull(p, "artifactId", doc);
+			putIfNotNull(p, "name", doc);
+			putIfNotNull(p, "description", doc);
+			putIfNotNull(p, "version", doc);
+			return p;
+		});
+	}
+
+	@Override
+	public void close() throws IOException {
+		IOException err = null;
+		for (Closeable c : resources) {
+			try {
+				c.close();
+			} catch (IOException ioe) {
+				err = ioe;
+			}
+		}
+		resources.clear();
+		if (err != null)
+			throw err;
+	}
+
+	private Optional<Document> findPom(Pattern nestedName) {
+		if (extensionProperties != null && pom != null) {
+			try {
+				var docBuilderFactory = DocumentBuilderFactory.newInstance();
+				var docBuilder = docBuilderFactory.newDocumentBuilder();
+				return Optional.of(docBuilder.parse(new ByteArrayInputStream(pom)));
+			} catch (Exception e) {
+			}
+		}
+		for (Nested n : nested) {
+			if (nestedName.matcher(n.name).matches()) {
+				ArchiveMetadata md = n.get();
+				if (md != null) {
+					Optional<Document> doc = md.findPom(nestedName);
+					if (doc.isPresent())
+						return doc;
+				}
+			}
+		}
+		return Optional.empty();
+	}
+
+	private boolean isOfInterest(String name) {
+		return name.equals("plugin.properties") || name.equals("extension.def") || name.endsWith("/extension.def")
+				|| name.equals("META-INF/MANIFEST.MF") || POM.matcher(name).matches();
+	}
+
+	private void entry(String name, InputStream in) throws IOException {
+		if (name.equals("plugin.properties")) {
+			pluginProperties = properties(in);
+		} else if (name.equals("extension.def") || name.endsWith("/extension.def")) {
+			if (extensionProperties == null)
+				extensionProperties = properties(in);
+			if (name.equals("extension.def"))
+				rootExtensionDef = true;
+		} else if (name.equals("META-INF/MANIFEST.MF")) {
+			manifest = new Manifest(in);
+		} else {
+			pom = in.readAllBytes();
+		}
+	}
+
+	private static Properties properties(InputStream in) throws IOException {
+		var p = new Properties();
+		p.load(in);
+		return p;
+	}
+
+	private static void putIfNotNull(Properties p, String name, Document doc) {
+		try {
+			var v = doc.getDocumentElement().getElementsByTagName(name).item(0).getTextContent();
+			if (v != null)
+				p.put(name, v);
+		} catch (Exception e) {
+		}
+	}
+}
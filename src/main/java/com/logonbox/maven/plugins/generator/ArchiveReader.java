@@ -0,0 +1,555 @@
+package com.logonbox.maven.plugins.generator;
+
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.channels.SeekableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipException;
+
+/**
+ * Reads a zip archive using its central directory, providing random access to
+ * individual entries. As well as the decompressed content, the <i>raw</i>
+ * (still compressed) bytes of an entry can be obtained, allowing entries to be
+ * copied from one archive to another (see {@link ArchiveWriter}) without
+ * inflating and deflating them again.
+ */
+public class ArchiveReader implements Closeable {
+
+	/**
+	 * An entry as described by the central directory.
+	 */
+	public static final class Entry {
+		private String name;
+		private int method;
+		private int flags;
+		private long dosTime;
+		private long crc;
+		private long size;
+		private long compressedSize;
+		private long localHeaderOffset;
+		private long dataOffset = -1;
+
+		public String getName() {
+			return name;
+		}
+
+		public int getMethod() {
+			return method;
+		}
+
+		public int getFlags() {
+			return flags;
+		}
+
+		public long getDosTime() {
+			return dosTime;
+		}
+
+		public long getCrc() {
+			return crc;
+		}
+
+		public long getSize() {
+			return size;
+		}
+
+		public long getCompressedSize() {
+			return compressedSize;
+		}
+
+		public long getLocalHeaderOffset() {
+			return localHeaderOffset;
+		}
+
+		public boolean isDirectory() {
+			return name.endsWith("/");
+		}
+
+		@Override
+		public String toString() {
+			return name;
+		}
+	}
+
+	private static final int LOCHDR = 30;
+	private static final int CENHDR = 46;
+	private static final int ENDHDR = 22;
+	private static final int ZIP64_LOCHDR = 20;
+	private static final int MAX_COMMENT = 0xFFFF;
+
+	private final SeekableByteChannel channel;
+	private final List<Entry> entries;
+	private final Map<String, Entry> byName;
+
+	public ArchiveReader(Path path) throws IOException {
+		this(FileChannel.open(path, StandardOpenOption.READ));
+	}
+
+	public ArchiveReader(SeekableByteChannel channel) throws IOException {
+		this.channel = channel;
+		try {
+			entries = Collections.unmodifiableList(readCentralDirectory());
+		} catch (IOException | RuntimeException e) {
+			channel.close();
+			throw e;
+		}
+		Map<String, Entry> m = new LinkedHashMap<>();
+		for (Entry e : entries)
+			m.putIfAbsent(e.name, e);
+		byName = Collections.unmodifiableMap(m);
+	}
+
+	/**
+	 * Create a reader for an archive held in memory.
+	 *
+	 * @param data archive
+	 * @return reader
+	 * @throws IOException on error
+	 */
+	public static ArchiveReader of(byte[] data) throws IOException {
+		return new ArchiveReader(new ByteArrayChannel(data));
+	}
+
+	/**
+	 * Get all entries, in central directory order.
+	 *
+	 * @return entries
+	 */
+	public List<Entry> getEntries() {
+		return entries;
+	}
+
+	/**
+	 * Get an entry given its name.
+	 *
+	 * @param name name
+	 * @return entry or <code>null</code> if no such entry
+	 */
+	public Entry getEntry(String name) {
+		return byName.get(name);
+	}
+
+	/**
+	 * Get the offset of the first byte of an entry's (compressed) data.
+	 *
+	 * @param entry entry
+	 * @return offset
+	 * @throws IOException on error
+	 */
+	public long getDataOffset(Entry entry) throws IOException {
+		if (entry.dataOffset == -1) {
+			ByteBuffer loc = read(entry.localHeaderOffset, LOCHDR);
+			if (loc.getInt(0) != ArchiveWriter.LOCSIG)
+				throw new ZipException(String.format("Invalid local header for %s.", entry.name));
+			entry.dataOffset = entry.localHeaderOffset + LOCHDR + (loc.getShort(26) & 0xffff)
+					+ (loc.getShort(28) & 0xffff);
+		}
+		return entry.dataOffset;
+	}
+
+	/**
+	 * Open an archive nested inside this one, such as a jar inside an extension
+	 * zip, without extracting it. The entry must be stored rather than
+	 * compressed, in which case the nested archive's central directory and
+	 * entries are read directly from the region of this archive that holds it.
+	 * The nested reader does not need to be closed, and cannot be used once this
+	 * reader is closed.
+	 *
+	 * @param entry entry
+	 * @return nested reader
+	 * @throws IOException on error, including if the entry is compressed
+	 */
+	public ArchiveReader openNested(Entry entry) throws IOException {
+		if (entry.method != ZipEntry.STORED)
+			throw new ZipException(String.format("%s is compressed, so cannot be read in place.", entry.name));
+		return new ArchiveReader(new RegionChannel(getDataOffset(entry), entry.compressedSize));
+	}
+
+	/**
+	 * Get a stream that provides the decompressed content of an entry.
+	 *
+	 * @param entry entry
+	 * @return stream
+	 * @throws IOException on error
+	 */
+	public InputStream getInputStream(Entry entry) throws IOException {
+		InputStream raw = getRawInputStream(entry);
+		switch (entry.method) {
+		case ZipEntry.STORED:
+			return raw;
+		case ZipEntry.DEFLATED:
+			return new InflaterInputStream(raw, new Inflater(true), 8192) {
+				private boolean eof;
+				private boolean closed;
+
+				@Override
+				protected void fill() throws IOException {
+					len = in.read(buf, 0, buf.length);
+					if (len == -1) {
+						if (eof)
+							throw new EOFException(String.format("Unexpected end of %s.", entry.name));
+						/* Inflater needs an extra dummy byte when using 'nowrap' */
+						eof = true;
+						buf[0] = 0;
+						len = 1;
+					}
+					inf.setInput(buf, 0, len);
+				}
+
+				@Override
+				public void close() throws IOException {
+					if (!closed) {
+						closed = true;
+						inf.end();
+						super.close();
+					}
+				}
+			};
+		default:
+			throw new ZipException(String.format("Unsupported compression method %d for %s.", entry.method,
+					entry.name));
+		}
+	}
+
+	/**
+	 * Get a stream that provides the raw (compressed) content of an entry.
+	 *
+	 * @param entry entry
+	 * @return stream
+	 * @throws IOException on error
+	 */
+	public InputStream getRawInputStream(Entry entry) throws IOException {
+		long start = getDataOffset(entry);
+		return new RegionInputStream(start, start + entry.compressedSize);
+	}
+
+	/**
+	 * Copy the raw (compressed) content of an entry to a channel. When this
+	 * archive is a file, {@link FileChannel#transferTo(long, long, WritableByteChannel)}
+	 * is used, allowing the operating system to copy the data directly.
+	 *
+	 * @param entry  entry
+	 * @param target target channel
+	 * @throws IOException on error
+	 */
+	public void transferRaw(Entry entry, WritableByteChannel target) throws IOException {
+		long pos = getDataOffset(entry);
+		long remaining = entry.compressedSize;
+		if (channel instanceof FileChannel) {
+			FileChannel fc = (FileChannel) channel;
+			while (remaining > 0) {
+				long n = fc.transferTo(pos, remaining, target);
+				if (n <= 0)
+					throw new EOFException(String.format("Unexpected end of %s.", entry.name));
+				pos += n;
+				remaining -= n;
+			}
+		} else {
+			ByteBuffer buf = ByteBuffer.allocate((int) Math.min(65536, Math.max(1, remaining)));
+			while (remaining > 0) {
+				buf.clear();
+				buf.limit((int) Math.min(buf.capacity(), remaining));
+				int n = readAt(buf, pos);
+				if (n <= 0)
+					throw new EOFException(String.format("Unexpected end of %s.", entry.name));
+				buf.flip();
+				while (buf.hasRemaining())
+					target.write(buf);
+				pos += n;
+				remaining -= n;
+			}
+		}
+	}
+
+	@Override
+	public void close() throws IOException {
+		channel.close();
+	}
+
+	private List<Entry> readCentralDirectory() throws IOException {
+		long size = channel.size();
+		if (size < ENDHDR)
+			throw new ZipException("Not a zip file, too short.");
+
+		int tailLen = (int) Math.min(size, ENDHDR + MAX_COMMENT);
+		long tailStart = size - tailLen;
+		ByteBuffer tail = read(tailStart, tailLen);
+		int endPos = -1;
+		for (int i = tailLen - ENDHDR; i >= 0; i--) {
+			if (tail.getInt(i) == ArchiveWriter.ENDSIG) {
+				endPos = i;
+				break;
+			}
+		}
+		if (endPos == -1)
+			throw new ZipException("Not a zip file, no end of central directory record.");
+
+		long count = tail.getShort(endPos + 10) & 0xffff;
+		long cenSize = tail.getInt(endPos + 12) & 0xffffffffL;
+		long cenOffset = tail.getInt(endPos + 16) & 0xffffffffL;
+
+		long endOffset = tailStart + endPos;
+		if (endOffset >= ZIP64_LOCHDR) {
+			ByteBuffer loc = read(endOffset - ZIP64_LOCHDR, ZIP64_LOCHDR);
+			if (loc.getInt(0) == ArchiveWriter.ZIP64_LOCSIG) {
+				ByteBuffer end64 = read(loc.getLong(8), 56);
+				if (end64.getInt(0) != ArchiveWriter.ZIP64_ENDSIG)
+					throw new ZipException("Invalid zip64 end of central directory record.");
+				count = end64.getLong(32);
+				cenSize = end64.getLong(40);
+				cenOffset = end64.getLong(48);
+			}
+		}
+
+		if (cenSize > Integer.MAX_VALUE || cenOffset + cenSize > size)
+			throw new ZipException("Invalid central directory.");
+
+		ByteBuffer cen = read(cenOffset, (int) cenSize);
+		List<Entry> l = new ArrayList<>((int) Math.min(count, 65536));
+		int pos = 0;
+		for (long i = 0; i < count; i++) {
+			if (pos + CENHDR > cen.limit() || cen.getInt(pos) != ArchiveWriter.CENSIG)
+				throw new ZipException("Invalid central directory header.");
+			Entry e = new Entry();
+			e.flags = cen.getShort(pos + 8) & 0xffff;
+			e.method = cen.getShort(pos + 10) & 0xffff;
+			e.dosTime = cen.getInt(pos + 12) & 0xffffffffL;
+			e.crc = cen.getInt(pos + 16) & 0xffffffffL;
+			e.compressedSize = cen.getInt(pos + 20) & 0xffffffffL;
+			e.size = cen.getInt(pos + 24) & 0xffffffffL;
+			int nameLen = cen.getShort(pos + 28) & 0xffff;
+			int extraLen = cen.getShort(pos + 30) & 0xffff;
+			int commentLen = cen.getShort(pos + 32) & 0xffff;
+			e.localHeaderOffset = cen.getInt(pos + 42) & 0xffffffffL;
+
+			byte[] name = new byte[nameLen];
+			cen.position(pos + CENHDR);
+			cen.get(name);
+			e.name = new String(name, StandardCharsets.UTF_8);
+
+			int extra = pos + CENHDR + nameLen;
+			int extraEnd = extra + extraLen;
+			while (extra + 4 <= extraEnd) {
+				int id = cen.getShort(extra) & 0xffff;
+				int len = cen.getShort(extra + 2) & 0xffff;
+				if (id == ArchiveWriter.ZIP64_EXTID) {
+					int p = extra + 4;
+					if (e.size == ArchiveWriter.ZIP64_MAGICVAL) {
+						e.size = cen.getLong(p);
+						p += 8;
+					}
+					if (e.compressedSize == ArchiveWriter.ZIP64_MAGICVAL) {
+						e.compressedSize = cen.getLong(p);
+						p += 8;
+					}
+					if (e.localHeaderOffset == ArchiveWriter.ZIP64_MAGICVAL) {
+						e.localHeaderOffset = cen.getLong(p);
+					}
+				}
+				extra += 4 + len;
+			}
+
+			l.add(e);
+			pos += CENHDR + nameLen + extraLen + commentLen;
+		}
+		return l;
+	}
+
+	private ByteBuffer read(long pos, int len) throws IOException {
+		ByteBuffer buf = ByteBuffer.allocate(len).order(ByteOrder.LITTLE_ENDIAN);
+		while (buf.hasRemaining()) {
+			if (readAt(buf, pos + buf.position()) == -1)
+				throw new EOFException("Unexpected end of archive.");
+		}
+		buf.flip();
+		return buf;
+	}
+
+	private int readAt(ByteBuffer buf, long pos) throws IOException {
+		if (channel instanceof FileChannel) {
+			return ((FileChannel) channel).read(buf, pos);
+		} else {
+			synchronized (channel) {
+				channel.position(pos);
+				return channel.read(buf);
+			}
+		}
+	}
+
+	private final class RegionInputStream extends InputStream {
+		private long pos;
+		private final long end;
+
+		RegionInputStream(long pos, long end) {
+			this.pos = pos;
+			this.end = end;
+		}
+
+		@Override
+		public int read() throws IOException {
+			byte[] b = new byte[1];
+			return read(b, 0, 1) == -1 ? -1 : b[0] & 0xff;
+		}
+
+		@Override
+		public int read(byte[] b, int off, int len) throws IOException {
+			if (pos >= end)
+				return -1;
+			ByteBuffer buf = ByteBuffer.wrap(b, off, (int) Math.min(len, end - pos));
+			int n = readAt(buf, pos);
+			if (n > 0)
+				pos += n;
+			return n;
+		}
+
+		@Override
+		public long skip(long n) throws IOException {
+			long s = Math.max(0, Math.min(n, end - pos));
+			pos += s;
+			return s;
+		}
+
+		@Override
+		public int available() throws IOException {
+			return (int) Math.min(Integer.MAX_VALUE, end - pos);
+		}
+	}
+
+	private final class RegionChannel implements SeekableByteChannel {
+		private final long start;
+		private final long size;
+		private long position;
+		private boolean open = true;
+
+		RegionChannel(long start, long size) {
+			this.start = start;
+			this.size = size;
+		}
+
+		@Override
+		public boolean isOpen() {
+			return open && channel.isOpen();
+		}
+
+		@Override
+		public void close() {
+			/* The outer archive owns the channel */
+			open = false;
+		}
+
+		@Override
+		public int read(ByteBuffer dst) throws IOException {
+			if (position >= size)
+				return -1;
+			int limit = dst.limit();
+			if (dst.remaining() > size - position)
+				dst.limit(dst.position() + (int) (size - position));
+			try {
+				int n = readAt(dst, start + position);
+				if (n > 0)
+					position += n;
+				return n;
+			} finally {
+				dst.limit(limit);
+			}
+		}
+
+		@Override
+		public int write(ByteBuffer src) throws IOException {
+			throw new IOException("Read only.");
+		}
+
+		@Override
+		public long position() {
+			return position;
+		}
+
+		@Override
+		public SeekableByteChannel position(long newPosition) {
+			position = Math.min(newPosition, size);
+			return this;
+		}
+
+		@Override
+		public long size() {
+			return size;
+		}
+
+		@Override
+		public SeekableByteChannel truncate(long size) throws IOException {
+			throw new IOException("Read only.");
+		}
+	}
+
+	static final class ByteArrayChannel implements SeekableByteChannel {
+		private final byte[] data;
+		private int position;
+		private boolean open = true;
+
+		ByteArrayChannel(byte[] data) {
+			this.data = data;
+		}
+
+		@Override
+		public boolean isOpen() {
+			return open;
+		}
+
+		@Override
+		public void close() {
+			open = false;
+		}
+
+		@Override
+		public int read(ByteBuffer dst) {
+			if (position >= data.length)
+				return -1;
+			int n = Math.min(dst.remaining(), data.length - position);
+			dst.put(data, position, n);
+			position += n;
+			return n;
+		}
+
+		@Override
+		public int write(ByteBuffer src) throws IOException {
+			throw new IOException("Read only.");
+		}
+
+		@Override
+		public long position() {
+			return position;
+		}
+
+		@Override
+		public SeekableByteChannel position(long newPosition) {
+			position = (int) Math.min(newPosition, data.length);
+			return this;
+		}
+
+		@Override
+		public long size() {
+			return data.length;
+		}
+
+		@Override
+		public SeekableByteChannel truncate(long size) throws IOException {
+			throw new IOException("Read only.");
+		}
+	}
+}
@@ -0,0 +1,781 @@
+package com.logonbox.maven.plugins.generator;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipException;
+
+/**
+ * Writes a zip archive, compressing the content of each entry in parallel on a
+ * {@link ForkJoinPool}. The pre-compressed entries are then written to the
+ * archive strictly in the order they were added, so the resulting archive has
+ * exactly the same entries (and entry content) as one written sequentially
+ * with a {@link java.util.zip.ZipOutputStream}.
+ * <p>
+ * Only a bounded number of entries, and bytes, are held in memory waiting to
+ * be written, so large archives do not need to be buffered in full. Compressed
+ * content larger than {@link #SPOOL_THRESHOLD} is spooled to a temporary file
+ * rather than held in memory, so entries of any size may be added. Entries may
+ * also be copied from an {@link ArchiveReader} in their compressed form.
+ * <p>
+ * As with {@link java.util.zip.ZipOutputStream}, adding an entry with the same
+ * name as one already added fails with a {@link ZipException}.
+ */
+public class ArchiveWriter implements Closeable {
+
+	public interface IOConsumer<T> {
+		void accept(T t) throws IOException;
+	}
+
+	static final int LOCSIG = 0x04034b50;
+	static final int CENSIG = 0x02014b50;
+	static final int ENDSIG = 0x06054b50;
+	static final int ZIP64_ENDSIG = 0x06064b50;
+	static final int ZIP64_LOCSIG = 0x07064b50;
+	static final int ZIP64_EXTID = 0x0001;
+	static final int EFS_FLAG = 0x0800;
+	static final long ZIP64_MAGICVAL = 0xFFFFFFFFL;
+	static final int ZIP64_MAGICCOUNT = 0xFFFF;
+
+	private static final int VERSION_DEFAULT = 20;
+	private static final int VERSION_ZIP64 = 45;
+
+	/**
+	 * Compressed content up to this size is held in memory until it is written,
+	 * anything larger is spooled to a temporary file.
+	 */
+	static final int SPOOL_THRESHOLD = 1024 * 1024;
+
+	/**
+	 * The most content held in memory by entries waiting to be written (as well
+	 * as at most two entries per thread in the pool).
+	 */
+	static final long MAX_PENDING_BYTES = 64L * 1024 * 1024;
+
+	static final class Compressed {
+		int method;
+		long crc;
+		long size;
+		long csize;
+		long nanos;
+		byte[] data;
+		Path spool;
+		File source;
+		ArchiveReader rawReader;
+		ArchiveReader.Entry rawEntry;
+	}
+
+	/**
+	 * How much work compression did (and did not) do for an archive.
+	 */
+	public static final class Statistics {
+		private int rawEntries;
+		private long rawBytes;
+		private int storedEntries;
+		private long storedBytes;
+		private int deflatedEntries;
+		private long deflatedInBytes;
+		private long deflatedOutBytes;
+		private long deflateNanos;
+
+		public int getRawEntries() {
+			return rawEntries;
+		}
+
+		public long getRawBytes() {
+			return rawBytes;
+		}
+
+		public int getStoredEntries() {
+			return storedEntries;
+		}
+
+		public long getStoredBytes() {
+			return storedBytes;
+		}
+
+		public int getDeflatedEntries() {
+			return deflatedEntries;
+		}
+
+		public long getDeflatedInBytes() {
+			return deflatedInBytes;
+		}
+
+		public long getDeflatedOutBytes() {
+			return deflatedOutBytes;
+		}
+
+		public long getDeflateMillis() {
+			return deflateNanos / 1000000;
+		}
+
+		/**
+		 * Estimate how long it would have taken to deflate the stored entries,
+		 * based on the throughput achieved for the entries that were deflated.
+		 *
+		 * @return estimated milliseconds saved
+		 */
+		public long getEstimatedMillisSaved() {
+			if (deflatedInBytes == 0)
+				return 0;
+			return (long) (((double) deflateNanos / deflatedInBytes) * storedBytes / 1000000);
+		}
+
+		@Override
+		public String toString() {
+			String str = String.format(
+					"Stored %d entries (%d bytes) without recompression, saving an estimated %d ms of CPU time. Deflated %d entries from %d to %d bytes (saving %d bytes) in %d ms of CPU time.",
+					storedEntries, storedBytes, getEstimatedMillisSaved(), deflatedEntries, deflatedInBytes,
+					deflatedOutBytes, deflatedInBytes - deflatedOutBytes, getDeflateMillis());
+			if (rawEntries > 0)
+				str += String.format(" Copied %d entries (%d bytes) as is.", rawEntries, rawBytes);
+			return str;
+		}
+	}
+
+	private final class PendingEntry {
+		final String name;
+		final long dosTime;
+		final ForkJoinTask<Compressed> task;
+		final long memory;
+
+		PendingEntry(String name, long dosTime, ForkJoinTask<Compressed> task, long memory) {
+			this.name = name;
+			this.dosTime = dosTime;
+			this.task = task;
+			this.memory = memory;
+		}
+	}
+
+	private static final class WrittenEntry {
+		byte[] name;
+		int method;
+		long dosTime;
+		long crc;
+		long size;
+		long csize;
+		long offset;
+	}
+
+	private final OutputStream out;
+	private final FileChannel channel;
+	private final ForkJoinPool pool;
+	private final CompressionPolicy policy;
+	private final Statistics statistics = new Statistics();
+	private final int window;
+	private final Deque<PendingEntry> pending = new ArrayDeque<>();
+	private final List<WrittenEntry> written = new ArrayList<>();
+	private final Set<String> names = new HashSet<>();
+	private final Set<Path> spools = new HashSet<>();
+	private long offset;
+	private long pendingBytes;
+	private boolean closed;
+	private boolean aborted;
+
+	public ArchiveWriter(OutputStream out) {
+		this(out, CompressionPolicy.DEFLATE_ALL);
+	}
+
+	public ArchiveWriter(OutputStream out, CompressionPolicy policy) {
+		this(out, policy, ForkJoinPool.commonPool());
+	}
+
+	public ArchiveWriter(OutputStream out, CompressionPolicy policy, ForkJoinPool pool) {
+		this(out, null, policy, pool);
+	}
+
+	/**
+	 * Create a writer for a file. Writing directly to a file allows raw entries
+	 * copied from another archive file to be transferred by the operating system
+	 * without passing through the heap.
+	 *
+	 * @param path   file to write
+	 * @param policy compression policy
+	 * @throws IOException on error
+	 */
+	public ArchiveWriter(Path path, CompressionPolicy policy) throws IOException {
+		this(FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+				StandardOpenOption.WRITE), policy);
+	}
+
+	private ArchiveWriter(FileChannel channel, CompressionPolicy policy) {
+		this(new BufferedOutputStream(Channels.newOutputStream(channel), 65536), channel, policy,
+				ForkJoinPool.commonPool());
+	}
+
+	private ArchiveWriter(OutputStream out, FileChannel channel, CompressionPolicy policy, ForkJoinPool pool) {
+		this.out = out;
+		this.channel = channel;
+		this.policy = policy;
+		this.pool = pool;
+		this.window = Math.max(2, pool.getParallelism() * 2);
+	}
+
+	/**
+	 * Add a directory entry. A trailing slash will be added to the name if it
+	 * does not already have one.
+	 *
+	 * @param name name of entry
+	 * @throws IOException on error
+	 */
+	public void directory(String name) throws IOException {
+		add(name.endsWith("/") ? name : name + "/", () -> {
+			Compressed c = new Compressed();
+			c.method = ZipEntry.STORED;
+			c.crc = new CRC32().getValue();
+			c.data = new byte[0];
+			return c;
+		}, 0);
+	}
+
+	/**
+	 * Get the compression statistics. These are only complete once the archive
+	 * has been closed.
+	 *
+	 * @return statistics
+	 */
+	public Statistics getStatistics() {
+		return statistics;
+	}
+
+	/**
+	 * Add an entry whose content is read from a file. The file is read and
+	 * compressed in the background. If the {@link CompressionPolicy} says the
+	 * entry should be stored, only the CRC is calculated in the background, and
+	 * the file is copied as is when the entry is written.
+	 *
+	 * @param name name of entry
+	 * @param file file
+	 * @throws IOException on error
+	 */
+	public void file(String name, File file) throws IOException {
+		file(name, file, policy.isStored(name) ? ZipEntry.STORED : ZipEntry.DEFLATED);
+	}
+
+	/**
+	 * Add an entry whose content is read from a file, using a specific
+	 * compression method rather than the one chosen by the
+	 * {@link CompressionPolicy}. The file must not change or be removed until
+	 * this writer is closed.
+	 *
+	 * @param name   name of entry
+	 * @param file   file
+	 * @param method {@link ZipEntry#STORED} or {@link ZipEntry#DEFLATED}
+	 * @throws IOException on error
+	 */
+	public void file(String name, File file, int method) throws IOException {
+		if (method == ZipEntry.STORED) {
+			add(name, () -> {
+				try (InputStream in = new FileInputStream(file)) {
+					Compressed c = crc(in);
+					c.source = file;
+					return c;
+				}
+			}, 0);
+		} else {
+			add(name, () -> {
+				try (InputStream in = new FileInputStream(file)) {
+					return deflate(in);
+				}
+			}, Math.min(file.length(), SPOOL_THRESHOLD));
+		}
+	}
+
+	/**
+	 * Add an entry with the given content.
+	 *
+	 * @param name name of entry
+	 * @param data content
+	 * @throws IOException on error
+	 */
+	public void bytes(String name, byte[] data) throws IOException {
+		bytes(name, data, policy.isStored(name) ? ZipEntry.STORED : ZipEntry.DEFLATED);
+	}
+
+	/**
+	 * Add an entry with the given content, using a specific compression method
+	 * rather than the one chosen by the {@link CompressionPolicy}.
+	 *
+	 * @param name   name of entry
+	 * @param data   content
+	 * @param method {@link ZipEntry#STORED} or {@link ZipEntry#DEFLATED}
+	 * @throws IOException on error
+	 */
+	public void bytes(String name, byte[] data, int method) throws IOException {
+		if (method == ZipEntry.STORED) {
+			add(name, () -> {
+				Compressed c = crc(new ByteArrayInputStream(data));
+				c.data = data;
+				return c;
+			}, data.length);
+		} else {
+			add(name, () -> deflate(new ByteArrayInputStream(data)),
+					data.length + Math.min(data.length, SPOOL_THRESHOLD));
+		}
+	}
+
+	/**
+	 * Copy an entry from another archive as is, without decompressing and
+	 * compressing it again. The reader must remain open until this writer is
+	 * closed.
+	 *
+	 * @param reader source archive
+	 * @param entry  entry in source archive
+	 * @throws IOException on error
+	 */
+	public void raw(ArchiveReader reader, ArchiveReader.Entry entry) throws IOException {
+		if (entry.getMethod() != ZipEntry.STORED && entry.getMethod() != ZipEntry.DEFLATED)
+			throw new ZipException(String.format("Unsupported compression method %d for %s.", entry.getMethod(),
+					entry.getName()));
+		if ((entry.getFlags() & 1) != 0)
+			throw new ZipException(String.format("%s is encrypted.", entry.getName()));
+		Compressed c = new Compressed();
+		c.method = entry.getMethod();
+		c.crc = entry.getCrc();
+		c.size = entry.getSize();
+		c.csize = entry.getCompressedSize();
+		c.rawReader = reader;
+		c.rawEntry = entry;
+		ForkJoinTask<Compressed> task = ForkJoinTask.adapt(() -> c);
+		task.complete(c);
+		checkName(entry.getName());
+		queue(new PendingEntry(entry.getName(), entry.getDosTime(), task, 0));
+	}
+
+	/**
+	 * Add an entry whose content is generated by writing to a stream. The
+	 * content is generated immediately on the calling thread, only the
+	 * compression happens in the background.
+	 *
+	 * @param name   name of entry
+	 * @param writer writes the content
+	 * @throws IOException on error
+	 */
+	public void content(String name, IOConsumer<OutputStream> writer) throws IOException {
+		ByteArrayOutputStream bout = new ByteArrayOutputStream();
+		writer.accept(bout);
+		bytes(name, bout.toByteArray());
+	}
+
+	/**
+	 * Add an entry whose content is generated by writing to a stream, using a
+	 * specific compression method rather than the one chosen by the
+	 * {@link CompressionPolicy}.
+	 *
+	 * @param name   name of entry
+	 * @param method {@link ZipEntry#STORED} or {@link ZipEntry#DEFLATED}
+	 * @param writer writes the content
+	 * @throws IOException on error
+	 */
+	public void content(String name, int method, IOConsumer<OutputStream> writer) throws IOException {
+		ByteArrayOutputStream bout = new ByteArrayOutputStream();
+		writer.accept(bout);
+		bytes(name, bout.toByteArray(), method);
+	}
+
+	@Override
+	public void close() throws IOException {
+		if (closed)
+			return;
+		closed = true;
+		try {
+			while (!pending.isEmpty()) {
+				writeNext();
+			}
+			writeCentralDirectory();
+			out.flush();
+		} finally {
+			for (PendingEntry e : pending)
+				e.task.cancel(true);
+			synchronized (spools) {
+				aborted = true;
+				for (Path spool : spools) {
+					try {
+						Files.deleteIfExists(spool);
+					} catch (IOException ioe) {
+						/* Still open by a compressing thread (on Windows) */
+						spool.toFile().deleteOnExit();
+					}
+				}
+				spools.clear();
+			}
+			out.close();
+		}
+	}
+
+	protected Compressed crc(InputStream in) throws IOException {
+		Compressed c = new Compressed();
+		c.method = ZipEntry.STORED;
+		CRC32 crc = new CRC32();
+		byte[] buf = new byte[65536];
+		int r;
+		while ((r = in.read(buf)) != -1) {
+			crc.update(buf, 0, r);
+			c.size += r;
+		}
+		c.csize = c.size;
+		c.crc = crc.getValue();
+		return c;
+	}
+
+	protected Compressed deflate(InputStream in) throws IOException {
+		long started = System.nanoTime();
+		Compressed c = new Compressed();
+		c.method = ZipEntry.DEFLATED;
+		CRC32 crc = new CRC32();
+		Deflater deflater = new Deflater(policy.getLevel(), true);
+		Spool spool = new Spool();
+		try {
+			try (DeflaterOutputStream dout = new DeflaterOutputStream(spool, deflater, 65536)) {
+				byte[] buf = new byte[65536];
+				int r;
+				while ((r = in.read(buf)) != -1) {
+					crc.update(buf, 0, r);
+					dout.write(buf, 0, r);
+					c.size += r;
+				}
+			}
+			if (spool.file == null)
+				c.data = spool.memory.toByteArray();
+			else
+				c.spool = spool.file;
+			c.csize = spool.size;
+			c.crc = crc.getValue();
+			c.nanos = System.nanoTime() - started;
+			return c;
+		} catch (IOException | RuntimeException e) {
+			spool.delete();
+			throw e;
+		} finally {
+			deflater.end();
+		}
+	}
+
+	/**
+	 * Collects compressed content in memory, until there is more than
+	 * {@link ArchiveWriter#SPOOL_THRESHOLD} of it, when it is moved to a
+	 * temporary file. Temporary files are deleted once written to the archive,
+	 * or when the archive is closed.
+	 */
+	private final class Spool extends OutputStream {
+		private ByteArrayOutputStream memory = new ByteArrayOutputStream();
+		private Path file;
+		private OutputStream fileOut;
+		private long size;
+
+		@Override
+		public void write(int b) throws IOException {
+			write(new byte[] { (byte) b }, 0, 1);
+		}
+
+		@Override
+		public void write(byte[] b, int off, int len) throws IOException {
+			if (fileOut == null && memory.size() + len > SPOOL_THRESHOLD) {
+				synchronized (spools) {
+					if (aborted)
+						throw new IOException("Archive is closed.");
+					file = Files.createTempFile("archive-entry", ".tmp");
+					spools.add(file);
+				}
+				fileOut = new BufferedOutputStream(Files.newOutputStream(file), 65536);
+				memory.writeTo(fileOut);
+				memory = null;
+			}
+			if (fileOut == null)
+				memory.write(b, off, len);
+			else
+				fileOut.write(b, off, len);
+			size += len;
+		}
+
+		@Override
+		public void close() throws IOException {
+			if (fileOut != null)
+				fileOut.close();
+		}
+
+		void delete() throws IOException {
+			close();
+			if (file != null)
+				deleteSpool(file);
+		}
+	}
+
+	private void deleteSpool(Path file) throws IOException {
+		synchronized (spools) {
+			spools.remove(file);
+		}
+		Files.deleteIfExists(file);
+	}
+
+	interface Compressor {
+		Compressed compress() throws IOException;
+	}
+
+	private void add(String name, Compressor compressor, long memory) throws IOException {
+		checkName(name);
+		ForkJoinTask<Compressed> task = ForkJoinTask.adapt(() -> {
+			try {
+				return compressor.compress();
+			} catch (IOException ioe) {
+				throw new UncheckedIOException(ioe);
+			}
+		});
+		pool.execute(task);
+		queue(new PendingEntry(name, javaToDosTime(System.currentTimeMillis()), task, memory));
+	}
+
+	private void checkName(String name) throws IOException {
+		if (closed)
+			throw new IOException("Archive is closed.");
+		if (!names.add(name))
+			throw new ZipException("duplicate entry: " + name);
+	}
+
+	private void queue(PendingEntry entry) throws IOException {
+		pending.add(entry);
+		pendingBytes += entry.memory;
+		while (pending.size() > window || (pendingBytes > MAX_PENDING_BYTES && pending.size() > 1)) {
+			writeNext();
+		}
+	}
+
+	private void writeNext() throws IOException {
+		PendingEntry entry = pending.removeFirst();
+		pendingBytes -= entry.memory;
+		Compressed c;
+		try {
+			c = entry.task.join();
+		} catch (UncheckedIOException uioe) {
+			throw new IOException(String.format("Failed to compress %s.", entry.name), uioe.getCause());
+		}
+
+		if (c.rawEntry != null) {
+			statistics.rawEntries++;
+			statistics.rawBytes += c.csize;
+		} else if (c.method == ZipEntry.STORED) {
+			if (c.size > 0) {
+				statistics.storedEntries++;
+				statistics.storedBytes += c.size;
+			}
+		} else {
+			statistics.deflatedEntries++;
+			statistics.deflatedInBytes += c.size;
+			statistics.deflatedOutBytes += c.csize;
+			statistics.deflateNanos += c.nanos;
+		}
+
+		WrittenEntry w = new WrittenEntry();
+		w.name = entry.name.getBytes(StandardCharsets.UTF_8);
+		w.method = c.method;
+		w.dosTime = entry.dosTime;
+		w.crc = c.crc;
+		w.size = c.size;
+		w.csize = c.method == ZipEntry.STORED ? c.size : c.csize;
+		w.offset = offset;
+		written.add(w);
+
+		boolean zip64 = w.size >= ZIP64_MAGICVAL || w.csize >= ZIP64_MAGICVAL;
+		writeInt(LOCSIG);
+		writeShort(zip64 ? VERSION_ZIP64 : VERSION_DEFAULT);
+		writeShort(EFS_FLAG);
+		writeShort(w.method);
+		writeInt(w.dosTime);
+		writeInt(w.crc);
+		writeInt(zip64 ? ZIP64_MAGICVAL : w.csize);
+		writeInt(zip64 ? ZIP64_MAGICVAL : w.size);
+		writeShort(w.name.length);
+		writeShort(zip64 ? 20 : 0);
+		writeBytes(w.name, 0, w.name.length);
+		if (zip64) {
+			writeShort(ZIP64_EXTID);
+			writeShort(16);
+			writeLong(w.size);
+			writeLong(w.csize);
+		}
+		if (c.rawEntry != null) {
+			if (channel == null) {
+				try (InputStream in = c.rawReader.getRawInputStream(c.rawEntry)) {
+					byte[] buf = new byte[65536];
+					int r;
+					while ((r = in.read(buf)) != -1)
+						writeBytes(buf, 0, r);
+				}
+			} else {
+				out.flush();
+				c.rawReader.transferRaw(c.rawEntry, channel);
+				offset += c.csize;
+			}
+		} else if (c.spool != null) {
+			try {
+				if (channel == null) {
+					try (InputStream in = Files.newInputStream(c.spool)) {
+						byte[] buf = new byte[65536];
+						int r;
+						while ((r = in.read(buf)) != -1)
+							writeBytes(buf, 0, r);
+					}
+				} else {
+					out.flush();
+					try (FileChannel spool = FileChannel.open(c.spool, StandardOpenOption.READ)) {
+						long pos = 0;
+						while (pos < c.csize)
+							pos += spool.transferTo(pos, c.csize - pos, channel);
+					}
+					offset += c.csize;
+				}
+			} finally {
+				deleteSpool(c.spool);
+			}
+		} else if (c.source == null) {
+			writeBytes(c.data, 0, c.data.length);
+		} else {
+			try (InputStream in = new FileInputStream(c.source)) {
+				byte[] buf = new byte[65536];
+				long remaining = c.size;
+				int r;
+				while (remaining > 0 && (r = in.read(buf, 0, (int) Math.min(buf.length, remaining))) != -1) {
+					writeBytes(buf, 0, r);
+					remaining -= r;
+				}
+				if (remaining > 0 || in.read() != -1)
+					throw new IOException(String.format("%s changed while it was being archived.", c.source));
+			}
+		}
+	}
+
+	private void writeCentralDirectory() throws IOException {
+		long cenOffset = offset;
+		for (WrittenEntry w : written) {
+			int extraLen = 0;
+			if (w.size >= ZIP64_MAGICVAL)
+				extraLen += 8;
+			if (w.csize >= ZIP64_MAGICVAL)
+				extraLen += 8;
+			if (w.offset >= ZIP64_MAGICVAL)
+				extraLen += 8;
+			int version = extraLen > 0 ? VERSION_ZIP64 : VERSION_DEFAULT;
+
+			writeInt(CENSIG);
+			writeShort(version);
+			writeShort(version);
+			writeShort(EFS_FLAG);
+			writeShort(w.method);
+			writeInt(w.dosTime);
+			writeInt(w.crc);
+			writeInt(Math.min(w.csize, ZIP64_MAGICVAL));
+			writeInt(Math.min(w.size, ZIP64_MAGICVAL));
+			writeShort(w.name.length);
+			writeShort(extraLen > 0 ? extraLen + 4 : 0);
+			writeShort(0);
+			writeShort(0);
+			writeShort(0);
+			writeInt(0);
+			writeInt(Math.min(w.offset, ZIP64_MAGICVAL));
+			writeBytes(w.name, 0, w.name.length);
+			if (extraLen > 0) {
+				writeShort(ZIP64_EXTID);
+				writeShort(extraLen);
+				if (w.size >= ZIP64_MAGICVAL)
+					writeLong(w.size);
+				if (w.csize >= ZIP64_MAGICVAL)
+					writeLong(w.csize);
+				if (w.offset >= ZIP64_MAGICVAL)
+					writeLong(w.offset);
+			}
+		}
+		long cenSize = offset - cenOffset;
+		int count = written.size();
+
+		if (count >= ZIP64_MAGICCOUNT || cenOffset >= ZIP64_MAGICVAL || cenSize >= ZIP64_MAGICVAL) {
+			long zip64EndOffset = offset;
+			writeInt(ZIP64_ENDSIG);
+			writeLong(44);
+			writeShort(VERSION_ZIP64);
+			writeShort(VERSION_ZIP64);
+			writeInt(0);
+			writeInt(0);
+			writeLong(count);
+			writeLong(count);
+			writeLong(cenSize);
+			writeLong(cenOffset);
+
+			writeInt(ZIP64_LOCSIG);
+			writeInt(0);
+			writeLong(zip64EndOffset);
+			writeInt(1);
+		}
+
+		writeInt(ENDSIG);
+		writeShort(0);
+		writeShort(0);
+		writeShort(Math.min(count, ZIP64_MAGICCOUNT));
+		writeShort(Math.min(count, ZIP64_MAGICCOUNT));
+		writeInt(Math.min(cenSize, ZIP64_MAGICVAL));
+		writeInt(Math.min(cenOffset, ZIP64_MAGICVAL));
+		writeShort(0);
+	}
+
+	private void writeShort(int v) throws IOException {
+		out.write(v & 0xff);
+		out.write((v >>> 8) & 0xff);
+		offset += 2;
+	}
+
+	private void writeInt(long v) throws IOException {
+		out.write((int) (v & 0xff));
+		out.write((int) ((v >>> 8) & 0xff));
+		out.write((int) ((v >>> 16) & 0xff));
+		out.write((int) ((v >>> 24) & 0xff));
+		offset += 4;
+	}
+
+	private void writeLong(long v) throws IOException {
+		writeInt(v & 0xffffffffL);
+		writeInt(v >>> 32);
+	}
+
+	private void writeBytes(byte[] b, int off, int len) throws IOException {
+		out.write(b, off, len);
+		offset += len;
+	}
+
+	static long javaToDosTime(long time) {
+		LocalDateTime ldt = LocalDateTime.ofInstant(Instant.ofEpochMilli(time), ZoneId.systemDefault());
+		int year = ldt.getYear() - 1980;
+		if (year < 0) {
+			return (1 << 21) | (1 << 16);
+		}
+		return ((long) year << 25 | ldt.getMonthValue() << 21 | ldt.getDayOfMonth() << 16 | ldt.getHour() << 11
+				| ldt.getMinute() << 5 | ldt.getSecond() >> 1) & 0xffffffffL;
+	}
+}
@@ -0,0 +1,199 @@
+package com.logonbox.maven.plugins.generator;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.URISyntaxException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.security.CodeSource;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Map;
+import java.util.Properties;
+import java.util.TreeMap;
+import java.util.stream.Stream;
+
+import org.apache.commons.codec.binary.Hex;
+
+/**
+ * A fingerprint of everything that goes into building an archive, i.e. the
+ * artifacts it contains, the files it is built from and any settings that
+ * affect it. Files are fingerprinted by their path, size and modification
+ * time, so they do not need to be read.
+ * <p>
+ * The fingerprint is saved next to the archive once it has been built. If on
+ * the next build the fingerprint is the same, and everything built last time
+ * still exists, building the archive again may be skipped.
+ */
+public class BuildFingerprint {
+
+	private static final String FORMAT = "2";
+	private static final String EXT = ".fingerprint";
+
+	private final File file;
+	private final MessageDigest digest;
+	private String value;
+
+	/**
+	 * Constructor.
+	 *
+	 * @param archive the archive being built
+	 */
+	public BuildFingerprint(File archive) {
+		file = new File(archive.getParentFile(), archive.getName() + EXT);
+		try {
+			digest = MessageDigest.getInstance("SHA-256");
+		} catch (NoSuchAlgorithmException e) {
+			throw new IllegalStateException(e);
+		}
+		add("format", FORMAT);
+		file("generator", generatorLocation());
+	}
+
+	/**
+	 * Get the jar (or classes directory) this plugin was loaded from, so that
+	 * any new build of the plugin, even of the same snapshot version, changes
+	 * every fingerprint.
+	 *
+	 * @return location, or <code>null</code> if it is not known
+	 */
+	static File generatorLocation() {
+		CodeSource source = BuildFingerprint.class.getProtectionDomain().getCodeSource();
+		if (source == null || source.getLocation() == null)
+			return null;
+		try {
+			return new File(source.getLocation().toURI());
+		} catch (URISyntaxException | IllegalArgumentException e) {
+			return null;
+		}
+	}
+
+	/**
+	 * Add a named value.
+	 *
+	 * @param name  name
+	 * @param value value
+	 * @return this for chaining
+	 */
+	public BuildFingerprint add(String name, Object value) {
+		if (this.value != null)
+			throw new IllegalStateException("Fingerprint is complete.");
+		digest.update((name + "\0" + value + "\n").getBytes(StandardCharsets.UTF_8));
+		return this;
+	}
+
+	/**
+	 * Add properties, in key order.
+	 *
+	 * @param name       name
+	 * @param properties properties
+	 * @return this for chaining
+	 */
+	public BuildFingerprint add(String name, Properties properties) {
+		Map<String, String> sorted = new TreeMap<>();
+		for (String key : properties.stringPropertyNames())
+			sorted.put(key, properties.getProperty(key));
+		return add(name, (Object) sorted);
+	}
+
+	/**
+	 * Add a file, or if it is a directory, all of the files in it. A file that
+	 * does not exist is also part of the fingerprint, so creating it changes the
+	 * fingerprint.
+	 *
+	 * @param name name
+	 * @param file file or directory
+	 * @return this for chaining
+	 */
+	public BuildFingerprint file(String name, File file) {
+		if (file == null)
+			return add(name, "none");
+		Path path = file.toPath();
+		if (Files.isDirectory(path)) {
+			try (Stream<Path> paths = Files.walk(path)) {
+				paths.filter(Files::isRegularFile).sorted()
+						.forEach(p -> add(name, path.relativize(p) + "\0" + attributes(p)));
+			} catch (IOException ioe) {
+				throw new UncheckedIOException(ioe);
+			}
+			return this;
+		}
+		return add(name, file.getAbsolutePath() + "\0" + attributes(path));
+	}
+
+	/**
+	 * Get whether the archive was last built with the same fingerprint, and
+	 * everything that was built then still exists.
+	 *
+	 * @param outputs the archive and anything else built along with it
+	 * @return current
+	 */
+	public boolean isCurrent(File... outputs) {
+		for (File output : outputs) {
+			if (!output.exists())
+				return false;
+		}
+		try {
+			return Files.readString(file.toPath(), StandardCharsets.UTF_8).trim().equals(value());
+		} catch (IOException ioe) {
+			return false;
+		}
+	}
+
+	/**
+	 * Forget any previous fingerprint, before building the archive again. This
+	 * means a build that fails part way through is never taken to be current.
+	 *
+	 * @throws IOException on error
+	 */
+	public void invalidate() throws IOException {
+		Files.deleteIfExists(file.toPath());
+	}
+
+	/**
+	 * Save the fingerprint, once the archive has been built.
+	 *
+	 * @throws IOException on error
+	 */
+	public void save() throws IOException {
+		Path tmp = Files.createTempFile(file.getParentFile().toPath(), file.getName(), ".tmp");
+		try {
+			Files.writeString(tmp, value() + System.lineSeparator(), StandardCharsets.UTF_8);
+			Files.move(tmp, file.toPath(), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+		} finally {
+			Files.deleteIfExists(tmp);
+		}
+	}
+
+	/**
+	 * Get the fingerprint. Nothing more may be added after this.
+	 *
+	 * @return fingerprint
+	 */
+	public String value() {
+		if (value == null)
+			value = Hex.encodeHexString(digest.digest());
+		return value;
+	}
+
+	@Override
+	public String toString() {
+		return value();
+	}
+
+	private static String attributes(Path path) {
+		try {
+			BasicFileAttributes attrs = Files.readAttributes(path, BasicFileAttributes.class);
+			return attrs.size() + "\0" + attrs.lastModifiedTime().toMillis();
+		} catch (NoSuchFileException nsfe) {
+			return "missing";
+		} catch (IOException ioe) {
+			throw new UncheckedIOException(ioe);
+		}
+	}
+}
@@ -24,7 +24,8 @@ public class CleanExtensionsMojo extends AbstractBaseExtensionsMojo {
 	private File outputDirectory;
 
 	protected void onExecute() throws MojoExecutionException, MojoFailureException {
-		new File(outputDirectory, "dependencies.ser").delete();
+		new File(outputDirectory, DependencyMap.FILENAME).delete();
+		new File(outputDirectory, DependencyMap.LEGACY_FILENAME).delete();
 		try {
 			FileUtils.deleteDirectory(new File(outputDirectory, "extension-def"));
 		} catch (IOException e) {
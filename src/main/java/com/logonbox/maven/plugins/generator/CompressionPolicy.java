@@ -0,0 +1,113 @@
+package com.logonbox.maven.plugins.generator;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.regex.Pattern;
+import java.util.zip.Deflater;
+
+/**
+ * Decides how each entry added to an archive is compressed. Entries whose names
+ * match one of the <i>store patterns</i> (for example <code>*.jar</code>) are
+ * already compressed, so they are added uncompressed (STORED). Everything else
+ * is deflated at the configured level.
+ * <p>
+ * Patterns are simple globs, where <code>*</code> matches any sequence of
+ * characters other than <code>/</code>, and <code>?</code> matches any single
+ * character other than <code>/</code>. A pattern without a <code>/</code> is
+ * matched against the last path segment of the entry name only.
+ */
+public class CompressionPolicy {
+
+	public static final List<String> DEFAULT_STORE_PATTERNS = Collections
+			.unmodifiableList(Arrays.asList("*.jar", "*.zip", "*.png", "*.jpg", "*.gif"));
+
+	/**
+	 * Deflate everything at the default level, i.e. the same as
+	 * {@link java.util.zip.ZipOutputStream}.
+	 */
+	public static final CompressionPolicy DEFLATE_ALL = new CompressionPolicy(Collections.emptyList(),
+			Deflater.DEFAULT_COMPRESSION);
+
+	private final List<Pattern> namePatterns = new ArrayList<>();
+	private final List<Pattern> pathPatterns = new ArrayList<>();
+	private final int level;
+
+	public CompressionPolicy(String[] storePatterns, int level) {
+		this(storePatterns == null ? DEFAULT_STORE_PATTERNS : Arrays.asList(storePatterns), level);
+	}
+
+	public CompressionPolicy(List<String> storePatterns, int level) {
+		if (level < Deflater.DEFAULT_COMPRESSION || level > Deflater.BEST_COMPRESSION)
+			throw new IllegalArgumentException(String.format("Invalid compression level %d.", level));
+		this.level = level;
+		for (String pattern : storePatterns) {
+			pattern = pattern.trim();
+			if (pattern.equals(""))
+				continue;
+			if (pattern.contains("/"))
+				pathPatterns.add(globToRegex(pattern));
+			else
+				namePatterns.add(globToRegex(pattern));
+		}
+	}
+
+	/**
+	 * Get the deflate level to use for entries that are not stored.
+	 *
+	 * @return level
+	 */
+	public int getLevel() {
+		return level;
+	}
+
+	/**
+	 * Get whether an entry should be added without compression.
+	 *
+	 * @param entryName entry name
+	 * @return store
+	 */
+	public boolean isStored(String entryName) {
+		if (level == Deflater.NO_COMPRESSION)
+			return true;
+		if (!pathPatterns.isEmpty()) {
+			for (Pattern p : pathPatterns) {
+				if (p.matcher(entryName).matches())
+					return true;
+			}
+		}
+		if (!namePatterns.isEmpty()) {
+			int idx = entryName.lastIndexOf('/');
+			String name = idx == -1 ? entryName : entryName.substring(idx + 1);
+			for (Pattern p : namePatterns) {
+				if (p.matcher(name).matches())
+					return true;
+			}
+		}
+		return false;
+	}
+
+	@Override
+	public String toString() {
+		return String.format("level=%d store=%s %s", level, pathPatterns, namePatterns);
+	}
+
+	static Pattern globToRegex(String glob) {
+		StringBuilder b = new StringBuilder();
+		StringBuilder literal = new StringBuilder();
+		for (char c : glob.toCharArray()) {
+			if (c == '*' || c == '?') {
+				if (literal.length() > 0) {
+					b.append(Pattern.quote(literal.toString()));
+					literal.setLength(0);
+				}
+				b.append(c == '*' ? "[^/]*" : "[^/]");
+			} else
+				literal.append(c);
+		}
+		if (literal.length() > 0)
+			b.append(Pattern.quote(literal.toString()));
+		return Pattern.compile(b.toString(), Pattern.CASE_INSENSITIVE);
+	}
+}
@@ -0,0 +1,550 @@
+package com.logonbox.maven.plugins.generator;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectInputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The resolved versions and files of every dependency of a project, as written
+ * by {@link ResolveDependenciesMojo} and used to generate plugins. Keys are as
+ * made by {@link ResolveDependenciesMojo#makeKey(org.apache.maven.artifact.Artifact)}.
+ * <p>
+ * The map is stored in a compact binary format that is memory mapped and
+ * searched in place, so a lookup only decodes the strings it touches, rather
+ * than the whole map being deserialized. On Windows the map is read into the
+ * heap instead, as a file that is mapped cannot be replaced until the mapping
+ * is garbage collected. The layout (all integers big endian) is :-
+ *
+ * <pre>
+ * magic           int    'LBDM'
+ * format          int    2
+ * string count    int    S
+ * string offsets  int[S + 1], offsets into the string data
+ * string data     byte[], UTF-8
+ * entry count     int    N
+ * entries         N x (group, artifact, version, file) string indexes, sorted
+ *                 by group then artifact. The version index is -1 if the
+ *                 version is <code>null</code>, and the file index is -1 if
+ *                 there is no file
+ * </pre>
+ *
+ * Group IDs, versions and so on are very often shared between dependencies, so
+ * each distinct string is only stored once. The artifact part of a key
+ * includes the classifier if there is one. Format 1 maps, where a
+ * <code>null</code> version was written as an empty string, may still be read.
+ * <p>
+ * Maps in the older format, two serialized {@link HashMap}s in
+ * <code>dependencies.ser</code>, may still be read by {@link #open(Path)}.
+ */
+public final class DependencyMap {
+
+	public static final String FILENAME = "dependencies.map";
+	public static final String LEGACY_FILENAME = "dependencies.ser";
+	public static final String LOCK_FILENAME = "dependencies.lock";
+
+	private static final int MAGIC = 0x4c42444d;
+	private static final int FORMAT = 2;
+	private static final int MIN_FORMAT = 1;
+	private static final int ENTRY_SIZE = 16;
+
+	private final ByteBuffer buffer;
+	private final int stringCount;
+	private final int offsetsStart;
+	private final int stringDataStart;
+	private final int entryCount;
+	private final int entriesStart;
+	private final String[] strings;
+
+	private DependencyMap(ByteBuffer buffer) throws IOException {
+		this.buffer = buffer;
+		try {
+			if (buffer.getInt(0) != MAGIC)
+				throw new IOException("Not a dependency map.");
+			int format = buffer.getInt(4);
+			if (format < MIN_FORMAT || format > FORMAT)
+				throw new IOException(String.format("Unsupported dependency map format %d.", format));
+			stringCount = buffer.getInt(8);
+			offsetsStart = 12;
+			stringDataStart = offsetsStart + (stringCount + 1) * 4;
+			int countAt = stringDataStart + buffer.getInt(offsetsStart + stringCount * 4);
+			entryCount = buffer.getInt(countAt);
+			entriesStart = countAt + 4;
+			if (stringCount < 0 || entryCount < 0 || entriesStart + (long) entryCount * ENTRY_SIZE > buffer.limit())
+				throw new IOException("Corrupt dependency map.");
+		} catch (IndexOutOfBoundsException ioobe) {
+			throw new IOException("Corrupt dependency map.", ioobe);
+		}
+		strings = new String[stringCount];
+	}
+
+	/**
+	 * Get the dependency map file in a project's <code>target</code> directory.
+	 * This will be the map in the current format, unless there is only a map in
+	 * the legacy format, or the legacy map is newer. The returned file may not
+	 * exist.
+	 *
+	 * @param targetDir target directory
+	 * @return file
+	 */
+	public static File locate(File targetDir) {
+		File file = new File(targetDir, FILENAME);
+		File legacy = new File(targetDir, LEGACY_FILENAME);
+		if (legacy.exists() && (!file.exists() || legacy.lastModified() > file.lastModified()))
+			return legacy;
+		return file;
+	}
+
+	/**
+	 * Open a dependency map, in either the current or the legacy format. Maps in
+	 * the current format are memory mapped (except on Windows).
+	 *
+	 * @param path path
+	 * @return map
+	 * @throws IOException on error
+	 */
+	public static DependencyMap open(Path path) throws IOException {
+		try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+			return open(channel);
+		}
+	}
+
+	/**
+	 * Open a dependency map, in either the current or the legacy format, from a
+	 * channel positioned at its start. Maps in the current format are memory
+	 * mapped (except on Windows), and remain usable after the channel is closed.
+	 *
+	 * @param channel channel
+	 * @return map
+	 * @throws IOException on error
+	 */
+	public static DependencyMap open(FileChannel channel) throws IOException {
+		return open(channel, !FileLinks.WINDOWS);
+	}
+
+	static DependencyMap open(FileChannel channel, boolean map) throws IOException {
+		long size = channel.size();
+		if (size > Integer.MAX_VALUE)
+			throw new IOException("Dependency map is too large.");
+		ByteBuffer head = ByteBuffer.allocate(4);
+		while (head.hasRemaining() && channel.read(head, head.position()) != -1)
+			;
+		if (!head.hasRemaining() && head.getInt(0) == MAGIC) {
+			if (map)
+				return new DependencyMap(channel.map(FileChannel.MapMode.READ_ONLY, 0, size));
+			ByteBuffer heap = ByteBuffer.allocate((int) size);
+			while (heap.hasRemaining() && channel.read(heap, heap.position()) != -1)
+				;
+			if (heap.hasRemaining())
+				throw new IOException("Dependency map was truncated while being read.");
+			return new DependencyMap(heap.flip());
+		}
+		return readLegacy(Channels.newInputStream(channel.position(0)));
+	}
+
+	/**
+	 * Read a map in the legacy format (two serialized {@link HashMap}s, versions
+	 * then files) and convert it.
+	 *
+	 * @param in input stream
+	 * @return map
+	 * @throws IOException on error
+	 */
+	@SuppressWarnings("unchecked")
+	public static DependencyMap readLegacy(InputStream in) throws IOException {
+		try {
+			ObjectInputStream obj = new ObjectInputStream(in);
+			Map<String, String> versions = (Map<String, String>) obj.readObject();
+			Map<String, File> files = (Map<String, File>) obj.readObject();
+			return of(versions, files);
+		} catch (ClassNotFoundException | ClassCastException e) {
+			throw new IOException("Corrupt legacy dependency map.", e);
+		}
+	}
+
+	/**
+	 * Create an in-memory map.
+	 *
+	 * @param versions versions
+	 * @param files    files
+	 * @return map
+	 */
+	public static DependencyMap of(Map<String, String> versions, Map<String, File> files) {
+		try {
+			return new DependencyMap(ByteBuffer.wrap(encode(versions, files)));
+		} catch (IOException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	/**
+	 * Open a dependency map while holding a shared lock, so it cannot be replaced
+	 * while it is being opened. The lock is released before returning, the
+	 * returned map remains valid even if it is then replaced.
+	 *
+	 * @param path          path
+	 * @param lockWaitNanos incremented by the time spent waiting for the lock
+	 * @return map
+	 * @throws IOException on error
+	 */
+	public static DependencyMap read(Path path, AtomicLong lockWaitNanos) throws IOException {
+		try (FileLocks.Lock lock = FileLocks.shared(lockFile(path))) {
+			lockWaitNanos.addAndGet(lock.getWaitNanos());
+			return open(path);
+		}
+	}
+
+	/**
+	 * Write a map. The keys of <code>versions</code> are the dependencies in the
+	 * map, <code>files</code> may not contain all of them. The map is written to a
+	 * temporary file first, and an exclusive lock is only held while that is
+	 * renamed over the previous map, and any legacy map is removed.
+	 *
+	 * @param path     path
+	 * @param versions versions
+	 * @param files    files
+	 * @return nanoseconds spent waiting for the lock
+	 * @throws IOException on error
+	 */
+	public static long write(Path path, Map<String, String> versions, Map<String, File> files) throws IOException {
+		Path tmp = Files.createTempFile(path.getParent(), "dependencies", ".tmp");
+		try {
+			Files.write(tmp, encode(versions, files));
+			try (FileLocks.Lock lock = FileLocks.exclusive(lockFile(path))) {
+				Files.move(tmp, path, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+				Files.deleteIfExists(path.resolveSibling(LEGACY_FILENAME));
+				return lock.getWaitNanos();
+			}
+		} finally {
+			Files.deleteIfExists(tmp);
+		}
+	}
+
+	static Path lockFile(Path path) {
+		return path.resolveSibling(LOCK_FILENAME);
+	}
+
+	static byte[] encode(Map<String, String> versions, Map<String, File> files) {
+		Map<String, Integer> index = new HashMap<>();
+		List<byte[]> stringData = new ArrayList<>();
+		List<int[]> entries = new ArrayList<>();
+		for (Map.Entry<String, String> en : versions.entrySet()) {
+			String[] ga = split(en.getKey());
+			File file = files.get(en.getKey());
+			entries.add(new int[] { intern(ga[0], index, stringData), intern(ga[1], index, stringData),
+					en.getValue() == null ? -1 : intern(en.getValue(), index, stringData),
+					file == null ? -1 : intern(file.getPath(), index, stringData) });
+		}
+		String[] byIndex = new String[stringData.size()];
+		index.forEach((k, v) -> byIndex[v] = k);
+		entries.sort(Comparator.<int[], String>comparing(e -> byIndex[e[0]]).thenComparing(e -> byIndex[e[1]]));
+
+		ByteArrayOutputStream bout = new ByteArrayOutputStream();
+		try (DataOutputStream out = new DataOutputStream(bout)) {
+			out.writeInt(MAGIC);
+			out.writeInt(FORMAT);
+			out.writeInt(stringData.size());
+			int offset = 0;
+			for (byte[] s : stringData) {
+				out.writeInt(offset);
+				offset += s.length;
+			}
+			out.writeInt(offset);
+			for (byte[] s : stringData)
+				out.write(s);
+			out.writeInt(entries.size());
+			for (int[] e : entries) {
+				for (int i : e)
+					out.writeInt(i);
+			}
+		} catch (IOException ioe) {
+			throw new IllegalStateException(ioe);
+		}
+		return bout.toByteArray();
+	}
+
+	/**
+	 * Get the number of dependencies in the map.
+	 *
+	 * @return size
+	 */
+	public int size() {
+		return entryCount;
+	}
+
+	/**
+	 * Get the version of a dependency.
+	 *
+	 * @param key key
+	 * @return version or <code>null</code> if not in the map
+	 */
+	public String getVersion(String key) {
+		int idx = find(key);
+		return idx == -1 ? null : version(idx);
+	}
+
+	/**
+	 * Get the file of a dependency.
+	 *
+	 * @param key key
+	 * @return file or <code>null</code> if not in the map, or it has no file
+	 */
+	public File getFile(String key) {
+		int idx = find(key);
+		if (idx == -1)
+			return null;
+		int fileIdx = buffer.getInt(entriesStart + idx * ENTRY_SIZE + 12);
+		return fileIdx == -1 ? null : new File(string(fileIdx));
+	}
+
+	/**
+	 * Get whether a dependency is in the map.
+	 *
+	 * @param key key
+	 * @return in map
+	 */
+	public boolean contains(String key) {
+		return find(key) != -1;
+	}
+
+	/**
+	 * Get a read-only {@link Map} view of the versions. As with the
+	 * {@link HashMap} in the legacy format, every dependency is included, even if
+	 * its version is <code>null</code>.
+	 *
+	 * @return versions
+	 */
+	public Map<String, String> versions() {
+		return new View<>() {
+			@Override
+			boolean present(int idx) {
+				return true;
+			}
+
+			@Override
+			String value(int idx) {
+				return version(idx);
+			}
+		};
+	}
+
+	/**
+	 * Get a read-only {@link Map} view of the files. Only dependencies that have a
+	 * file are included.
+	 *
+	 * @return files
+	 */
+	public Map<String, File> files() {
+		return new View<>() {
+			@Override
+			boolean present(int idx) {
+				return buffer.getInt(entriesStart + idx * ENTRY_SIZE + 12) != -1;
+			}
+
+			@Override
+			File value(int idx) {
+				int fileIdx = buffer.getInt(entriesStart + idx * ENTRY_SIZE + 12);
+				return fileIdx == -1 ? null : new File(string(fileIdx));
+			}
+		};
+	}
+
+	/**
+	 * Create a read-only view of several maps, as if they had been added one after
+	 * the other with {@link Map#putAll(Map)}, so where a key is in more than one,
+	 * the value from the last one is used. Lookups do not copy any of the maps.
+	 *
+	 * @param <V>    type of value
+	 * @param layers maps, lowest precedence first
+	 * @return view
+	 */
+	@SafeVarargs
+	public static <V> Map<String, V> layered(Map<String, V>... layers) {
+		return layered(Arrays.asList(layers));
+	}
+
+	/**
+	 * Create a read-only view of several maps, as if they had been added one after
+	 * the other with {@link Map#putAll(Map)}, so where a key is in more than one,
+	 * the value from the last one is used. Lookups do not copy any of the maps.
+	 *
+	 * @param <V>    type of value
+	 * @param layers maps, lowest precedence first
+	 * @return view
+	 */
+	public static <V> Map<String, V> layered(List<Map<String, V>> layers) {
+		List<Map<String, V>> reversed = new ArrayList<>(layers);
+		Collections.reverse(reversed);
+		return new AbstractMap<>() {
+			@Override
+			public V get(Object key) {
+				for (Map<String, V> m : reversed) {
+					V v = m.get(key);
+					if (v != null || m.containsKey(key))
+						return v;
+				}
+				return null;
+			}
+
+			@Override
+			public boolean containsKey(Object key) {
+				for (Map<String, V> m : reversed) {
+					if (m.containsKey(key))
+						return true;
+				}
+				return false;
+			}
+
+			@Override
+			public Set<Entry<String, V>> entrySet() {
+				Map<String, V> all = new HashMap<>();
+				for (Map<String, V> m : layers)
+					all.putAll(m);
+				return Collections.unmodifiableMap(all).entrySet();
+			}
+		};
+	}
+
+	int find(Object key) {
+		if (!(key instanceof String))
+			return -1;
+		String[] ga = split((String) key);
+		int lo = 0;
+		int hi = entryCount - 1;
+		while (lo <= hi) {
+			int mid = (lo + hi) >>> 1;
+			int at = entriesStart + mid * ENTRY_SIZE;
+			int c = string(buffer.getInt(at)).compareTo(ga[0]);
+			if (c == 0)
+				c = string(buffer.getInt(at + 4)).compareTo(ga[1]);
+			if (c < 0)
+				lo = mid + 1;
+			else if (c > 0)
+				hi = mid - 1;
+			else
+				return mid;
+		}
+		return -1;
+	}
+
+	String key(int idx) {
+		int at = entriesStart + idx * ENTRY_SIZE;
+		return string(buffer.getInt(at)) + "/" + string(buffer.getInt(at + 4));
+	}
+
+	private String version(int idx) {
+		int versionIdx = buffer.getInt(entriesStart + idx * ENTRY_SIZE + 8);
+		return versionIdx == -1 ? null : string(versionIdx);
+	}
+
+	private String string(int idx) {
+		String s = strings[idx];
+		if (s == null) {
+			int start = buffer.getInt(offsetsStart + idx * 4);
+			int end = buffer.getInt(offsetsStart + (idx + 1) * 4);
+			byte[] b = new byte[end - start];
+			ByteBuffer dup = buffer.duplicate();
+			dup.position(stringDataStart + start);
+			dup.get(b);
+			/* Racing threads will decode the same string, which is harmless */
+			strings[idx] = s = new String(b, StandardCharsets.UTF_8);
+		}
+		return s;
+	}
+
+	private static int intern(String s, Map<String, Integer> index, List<byte[]> stringData) {
+		return index.computeIfAbsent(s, k -> {
+			stringData.add(k.getBytes(StandardCharsets.UTF_8));
+			return stringData.size() - 1;
+		});
+	}
+
+	private static String[] split(String key) {
+		int idx = key.indexOf('/');
+		return idx == -1 ? new String[] { "", key } : new String[] { key.substring(0, idx), key.substring(idx + 1) };
+	}
+
+	private abstract class View<V> extends AbstractMap<String, V> {
+
+		abstract boolean present(int idx);
+
+		abstract V value(int idx);
+
+		@Override
+		public V get(Object key) {
+			int idx = find(key);
+			return idx == -1 ? null : value(idx);
+		}
+
+		@Override
+		public boolean containsKey(Object key) {
+			int idx = find(key);
+			return idx != -1 && present(idx);
+		}
+
+		@Override
+		public Set<Entry<String, V>> entrySet() {
+			return new AbstractSet<>() {
+				@Override
+				public Iterator<Entry<String, V>> iterator() {
+					return new Iterator<Entry<String, V>>() {
+						int next = advance(0);
+
+						@Override
+						public boolean hasNext() {
+							return next < entryCount;
+						}
+
+						@Override
+						public Entry<String, V> next() {
+							if (next >= entryCount)
+								throw new NoSuchElementException();
+							Entry<String, V> en = new SimpleImmutableEntry<>(key(next), value(next));
+							next = advance(next + 1);
+							return en;
+						}
+
+						int advance(int from) {
+							while (from < entryCount && !present(from))
+								from++;
+							return from;
+						}
+					};
+				}
+
+				@Override
+				public int size() {
+					int size = 0;
+					for (int i = 0; i < entryCount; i++) {
+						if (present(i))
+							size++;
+					}
+					return size;
+				}
+			};
+		}
+	}
+}
@@ -0,0 +1,83 @@
+package com.logonbox.maven.plugins.generator;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.maven.execution.MavenSession;
+
+/**
+ * Dependency maps that have already been opened in the current Maven session.
+ * Many plugin modules usually use the same maps, so each is only opened once
+ * unless it has been rewritten since, which is detected by a change in its
+ * modification time or size. {@link DependencyMap}s are immutable, so are
+ * shared between all executions, including those running in parallel.
+ */
+public class DependencyMapCache {
+
+	private static final class Cached {
+		final long modified;
+		final long size;
+		final DependencyMap map;
+
+		Cached(long modified, long size, DependencyMap map) {
+			this.modified = modified;
+			this.size = size;
+			this.map = map;
+		}
+	}
+
+	private final ConcurrentMap<Path, Cached> maps = new ConcurrentHashMap<>();
+	private final AtomicInteger hits = new AtomicInteger();
+	private final AtomicInteger misses = new AtomicInteger();
+
+	/**
+	 * Get the cache for a session.
+	 *
+	 * @param session session
+	 * @return cache
+	 */
+	public static DependencyMapCache get(MavenSession session) {
+		return SessionComponents.get(session, DependencyMapCache.class, DependencyMapCache::new);
+	}
+
+	/**
+	 * Get a dependency map, reading it (see
+	 * {@link DependencyMap#read(Path, AtomicLong)}) if it is not cached or has
+	 * changed.
+	 *
+	 * @param path          path
+	 * @param lockWaitNanos incremented by the time spent waiting for the lock
+	 * @return map
+	 * @throws IOException on error
+	 */
+	public DependencyMap read(Path path, AtomicLong lockWaitNanos) throws IOException {
+		Path key = path.toAbsolutePath().normalize();
+		BasicFileAttributes attrs = Files.readAttributes(key, BasicFileAttributes.class);
+		long modified = attrs.lastModifiedTime().toMillis();
+		Cached cached = maps.get(key);
+		if (cached != null && cached.modified == modified && cached.size == attrs.size()) {
+			hits.incrementAndGet();
+			return cached.map;
+		}
+		misses.incrementAndGet();
+		/*
+		 * If the map is replaced between getting its attributes and reading it, the
+		 * newer map is cached against the older attributes, so is just read again
+		 * next time.
+		 */
+		DependencyMap map = DependencyMap.read(key, lockWaitNanos);
+		maps.put(key, new Cached(modified, attrs.size(), map));
+		return map;
+	}
+
+	@Override
+	public String toString() {
+		return String.format("Dependency maps this session: %d read, %d shared.", misses.get(), hits.get());
+	}
+}
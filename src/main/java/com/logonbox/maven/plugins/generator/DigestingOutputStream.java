@@ -0,0 +1,89 @@
+package com.logonbox.maven.plugins.generator;
+
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.apache.commons.codec.binary.Hex;
+
+/**
+ * An output stream that calculates one or more digests (for example MD5 and
+ * SHA-256) of everything written through it, so that a file's checksums are
+ * known as soon as it has been written without having to read it again.
+ * <p>
+ * Every write updates every digest, so when writing small amounts at a time
+ * this should be placed below a {@link java.io.BufferedOutputStream} rather
+ * than above one.
+ */
+public class DigestingOutputStream extends FilterOutputStream {
+
+	private final Map<String, MessageDigest> digests = new LinkedHashMap<>();
+	private Map<String, String> values;
+	private long count;
+
+	/**
+	 * Constructor.
+	 *
+	 * @param out        stream to write to
+	 * @param algorithms digest algorithms, e.g. <code>MD5</code>
+	 * @throws IllegalArgumentException if an algorithm is not available
+	 */
+	public DigestingOutputStream(OutputStream out, Collection<String> algorithms) {
+		super(out);
+		for (String algorithm : algorithms) {
+			try {
+				digests.put(algorithm, MessageDigest.getInstance(algorithm));
+			} catch (NoSuchAlgorithmException e) {
+				throw new IllegalArgumentException(String.format("Unknown digest algorithm %s.", algorithm), e);
+			}
+		}
+	}
+
+	@Override
+	public void write(int b) throws IOException {
+		out.write(b);
+		for (MessageDigest digest : digests.values())
+			digest.update((byte) b);
+		count++;
+	}
+
+	@Override
+	public void write(byte[] b, int off, int len) throws IOException {
+		out.write(b, off, len);
+		for (MessageDigest digest : digests.values())
+			digest.update(b, off, len);
+		count += len;
+	}
+
+	/**
+	 * Get the number of bytes written.
+	 *
+	 * @return bytes written
+	 */
+	public long getCount() {
+		return count;
+	}
+
+	/**
+	 * Get the digests of everything written, as hex strings keyed by algorithm in
+	 * the order they were requested. This should only be called once everything
+	 * has been written.
+	 *
+	 * @return digests
+	 */
+	public Map<String, String> getDigests() {
+		if (values == null) {
+			Map<String, String> m = new LinkedHashMap<>();
+			for (Map.Entry<String, MessageDigest> en : digests.entrySet())
+				m.put(en.getKey(), Hex.encodeHexString(en.getValue().digest()));
+			values = Collections.unmodifiableMap(m);
+		}
+		return values;
+	}
+}
@@ -0,0 +1,161 @@
+package com.logonbox.maven.plugins.generator;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.jar.JarFile;
+
+import org.apache.maven.execution.MavenSession;
+
+/**
+ * Remembers which jar files are extensions, i.e. contain an
+ * <code>extension.def</code>, so each jar only needs to be opened once. Results
+ * are keyed by the path of the jar, and are only used while its size and
+ * modification time are unchanged.
+ * <p>
+ * One index is shared by all executions in a Maven session, and is saved in the
+ * local repository between builds. Saving merges with anything saved by other
+ * builds in the meantime.
+ */
+public class ExtensionIndex {
+
+	private static final String FILENAME = ".extension-index";
+	private static final String HEADER = "# logonbox-plugin-generator extension index 1";
+
+	private static final class Entry {
+		final long size;
+		final long modified;
+		final boolean extension;
+
+		Entry(long size, long modified, boolean extension) {
+			this.size = size;
+			this.modified = modified;
+			this.extension = extension;
+		}
+	}
+
+	private final Path file;
+	private final ConcurrentMap<String, Entry> entries = new ConcurrentHashMap<>();
+	private final AtomicBoolean dirty = new AtomicBoolean();
+	private final AtomicInteger hits = new AtomicInteger();
+	private final AtomicInteger misses = new AtomicInteger();
+
+	ExtensionIndex(Path file) {
+		this.file = file;
+		try {
+			load(file, entries);
+		} catch (IOException ioe) {
+			/* Start again */
+		}
+	}
+
+	/**
+	 * Get the index for a session.
+	 *
+	 * @param session session
+	 * @return index
+	 */
+	public static ExtensionIndex get(MavenSession session) {
+		return SessionComponents.get(session, ExtensionIndex.class,
+				() -> new ExtensionIndex(new File(session.getLocalRepository().getBasedir(), FILENAME).toPath()));
+	}
+
+	/**
+	 * Get whether a jar is an extension.
+	 *
+	 * @param jar jar
+	 * @return extension
+	 * @throws IOException on error
+	 */
+	public boolean isExtension(File jar) throws IOException {
+		String key = jar.getAbsolutePath();
+		BasicFileAttributes attrs = Files.readAttributes(jar.toPath(), BasicFileAttributes.class);
+		long modified = attrs.lastModifiedTime().toMillis();
+		Entry entry = entries.get(key);
+		if (entry != null && entry.size == attrs.size() && entry.modified == modified) {
+			hits.incrementAndGet();
+			return entry.extension;
+		}
+		misses.incrementAndGet();
+		boolean extension;
+		try (JarFile jarFile = new JarFile(jar)) {
+			extension = jarFile.getEntry("extension.def") != null;
+		}
+		entries.put(key, new Entry(attrs.size(), modified, extension));
+		dirty.set(true);
+		return extension;
+	}
+
+	/**
+	 * Save the index if anything has been added to it.
+	 *
+	 * @throws IOException on error
+	 */
+	public void save() throws IOException {
+		if (!dirty.getAndSet(false))
+			return;
+		Map<String, Entry> all = new TreeMap<>();
+		try {
+			load(file, all);
+		} catch (IOException ioe) {
+			/* Overwrite */
+		}
+		all.putAll(entries);
+
+		Files.createDirectories(file.getParent());
+		Path tmp = Files.createTempFile(file.getParent(), FILENAME, ".tmp");
+		try {
+			try (BufferedWriter w = Files.newBufferedWriter(tmp, StandardCharsets.UTF_8)) {
+				w.write(HEADER);
+				w.newLine();
+				for (Map.Entry<String, Entry> en : all.entrySet()) {
+					Entry e = en.getValue();
+					w.write((e.extension ? "E" : "-") + "\t" + e.size + "\t" + e.modified + "\t" + en.getKey());
+					w.newLine();
+				}
+			}
+			Files.move(tmp, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+		} finally {
+			Files.deleteIfExists(tmp);
+		}
+	}
+
+	@Override
+	public String toString() {
+		return String.format("Extension index: %d jars found in index, %d jars opened.", hits.get(), misses.get());
+	}
+
+	private static void load(Path file, Map<String, Entry> entries) throws IOException {
+		try (BufferedReader r = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+			if (!HEADER.equals(r.readLine()))
+				return;
+			String line;
+			while ((line = r.readLine()) != null) {
+				String[] parts = line.split("\t", 4);
+				if (parts.length == 4) {
+					try {
+						entries.put(parts[3],
+								new Entry(Long.parseLong(parts[1]), Long.parseLong(parts[2]), parts[0].equals("E")));
+					} catch (NumberFormatException nfe) {
+						/* Skip */
+					}
+				}
+			}
+		} catch (NoSuchFileException nsfe) {
+			/* Not created yet */
+		}
+	}
+}
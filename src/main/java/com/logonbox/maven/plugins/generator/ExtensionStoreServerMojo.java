@@ -2,21 +2,47 @@ package com.logonbox.maven.plugins.generator;
 
 import static com.logonbox.maven.plugins.generator.Plugins.getBestProperty;
 
+import java.io.ByteArrayInputStream;
+import java.io.Closeable;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.InputStream;
-import java.io.UnsupportedEncodingException;
+import java.io.InterruptedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Properties;
 import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
 
 import javax.json.Json;
 import javax.json.JsonArrayBuilder;
+import javax.json.JsonObject;
 import javax.json.JsonObjectBuilder;
+import javax.json.JsonValue;
 
 import org.apache.commons.codec.digest.DigestUtils;
 import org.apache.commons.io.FilenameUtils;
@@ -34,6 +60,7 @@ import org.sonatype.inject.Description;
 
 import com.sshtools.uhttpd.UHTTPD;
 import com.sshtools.uhttpd.UHTTPD.RootContext;
+import com.sshtools.uhttpd.UHTTPD.Status;
 import com.sshtools.uhttpd.UHTTPD.Transaction;
 
 /**
@@ -44,13 +71,356 @@ import com.sshtools.uhttpd.UHTTPD.Transaction;
 @Description("Starts an extension store server for testing extension system")
 public class ExtensionStoreServerMojo extends AbstractExtensionsMojo {
 
+	/**
+	 * An extension being served, along with everything about it needed for the
+	 * catalog. This is all gathered once, and gathered again only if the file
+	 * changes.
+	 */
 	class Extension {
-		Artifact artifact;
-		String hash;
-
-		Extension(Artifact artifact, String hash) {
+		final String key;
+		final Artifact artifact;
+		final File file;
+		final long size;
+		final long modified;
+		final String hash;
+		final List<Properties> properties;
+		final boolean plugin;
+		final String name;
+
+		Extension(String key, Artifact artifact, File file) throws IOException {
+			this.key = key;
 			this.artifact = artifact;
-			this.hash = hash;
+			this.file = file;
+			/* Get these first, so a change while hashing is always noticed */
+			size = file.length();
+			modified = file.lastModified();
+
+			try (InputStream in = new FileInputStream(file)) {
+				hash = DigestUtils.md5Hex(in);
+			}
+
+			var pluginProperties = new Properties();
+			var extensionProperties = new Properties();
+			var mavenProperties = new Properties();
+			try (var metadata = ArchiveMetadata.of(file.toPath())) {
+				metadata.getPluginProperties().ifPresent(pluginProperties::putAll);
+				metadata.getExtensionProperties().ifPresent(extensionProperties::putAll);
+				metadata.getMavenProperties().ifPresent(mavenProperties::putAll);
+			} catch (Exception e) {
+			}
+
+			var defaultProperties = new Properties();
+			defaultProperties.put("id", artifact.getArtifactId());
+
+			if(getLog().isDebugEnabled()) {
+				getLog().info("Properties from " + file + " are ");
+				pluginProperties.forEach((k, v) -> {
+					getLog().info("   " + k + " = " + v);
+				});
+				extensionProperties.forEach((k, v) -> {
+					getLog().info("   " + k + " = " + v);
+				});
+				mavenProperties.forEach((k, v) -> {
+					getLog().info("   " + k + " = " + v);
+				});
+				defaultProperties.forEach((k, v) -> {
+					getLog().info("   " + k + " = " + v);
+				});
+			}
+
+			properties = Arrays.asList(pluginProperties, extensionProperties, mavenProperties, defaultProperties);
+			plugin = !pluginProperties.isEmpty();
+			var name = getBestProperty(artifact.getGroupId() + ":" + artifact.getArtifactId(), properties, "x.plugin.name", "extension.name", "name");
+			name = name.replaceFirst("^Hypersocket - ", "");
+			name = name.replaceFirst("^LogonBox - ", "");
+			name = name.replaceFirst("^SSHTools - ", "");
+			name = name.replaceFirst("^Nervepoint - ", "");
+			this.name = name;
+		}
+
+		boolean isModified() {
+			return file.length() != size || file.lastModified() != modified;
+		}
+
+		JsonObjectBuilder toJson(String target) {
+			JsonObjectBuilder resource = Json.createObjectBuilder();
+			String artifactVersion = getArtifactVersion(artifact);
+			resource.add("size", size);
+			resource.add("url", key);
+			resource.add("filename", FilenameUtils.getName(key));
+			resource.add("repositoryDescription", description);
+			resource.add("modifiedDate", modified);
+			resource.add("version", getBestProperty(artifactVersion, properties, "plugin.version", "extension.version", "version"));
+			resource.add("hash", hash);
+			resource.add("extensionId",
+					getBestProperty(artifact.getArtifactId(), properties, "plugin.id", "extension.id", "artifactId"));
+			resource.add("state", "NOT_INSTALLED");
+			resource.add("target", extensionTarget.equals("") ? target : extensionTarget);
+			resource.add("mandatory", getBestProperty("false", properties, "x.plugin.mandatory", "extension.mandatory"));
+			resource.add("weight", 0);
+			resource.add("tab", tab);
+			resource.add("type", plugin ? "PLUGIN" : "EXTENSION");
+			resource.add("extensionName", name);
+			resource.add("description",
+					getBestProperty(name, properties, "plugin.description", "extension.description", "description"));
+			var dep = getBestProperty("", properties, "plugin.dependencies", "extension.depends");
+			resource.add("dependsOn", dep.equals("") ? Json.createArrayBuilder()
+					: Json.createArrayBuilder(Arrays.asList(dep.split(","))));
+			return resource;
+		}
+	}
+
+	/**
+	 * A JSON response, serialized and compressed once so it may be sent any
+	 * number of times, along with entity tags for each encoding.
+	 */
+	static final class JsonResponse {
+		final byte[] data;
+		final byte[] gzipped;
+		final String etag;
+		final String gzippedEtag;
+		final long modified;
+
+		JsonResponse(JsonObject json, long modified) {
+			this.modified = modified;
+			data = json.toString().getBytes(StandardCharsets.UTF_8);
+			gzipped = StoreHttp.gzip(data);
+			String hash = DigestUtils.md5Hex(data);
+			etag = StoreHttp.etag(hash);
+			gzippedEtag = StoreHttp.etag(hash + "-gzip");
+		}
+
+		void send(Transaction tx) {
+			tx.header("Vary", "Accept-Encoding");
+			if (StoreHttp.acceptsGzip(tx.headerOr("Accept-Encoding"))) {
+				if (!StoreHttp.isNotModified(tx, gzippedEtag, modified)) {
+					tx.header("Content-Encoding", "gzip");
+					send(tx, gzipped);
+				}
+			} else if (!StoreHttp.isNotModified(tx, etag, modified)) {
+				send(tx, data);
+			}
+		}
+
+		private void send(Transaction tx, byte[] content) {
+			tx.responseLength(content.length);
+			tx.response("text/json", new ByteArrayInputStream(content));
+		}
+	}
+
+	/**
+	 * All of the extensions being served. The JSON response for each target is
+	 * only built (and compressed) the first time it is requested. The target comes
+	 * from the request, so only the most recently used {@link #MAX_TARGETS}
+	 * responses are kept. A catalog never changes, if any extension changes a new
+	 * catalog is created.
+	 */
+	class Catalog {
+		static final int MAX_TARGETS = 16;
+
+		final Map<String, Extension> extensions;
+		final long modified;
+		private final Map<String, JsonResponse> json = Collections
+				.synchronizedMap(new LinkedHashMap<String, JsonResponse>(MAX_TARGETS, 0.75f, true) {
+					private static final long serialVersionUID = 1L;
+
+					@Override
+					protected boolean removeEldestEntry(Map.Entry<String, JsonResponse> eldest) {
+						return size() > MAX_TARGETS;
+					}
+				});
+
+		Catalog(Map<String, Extension> extensions) {
+			this.extensions = Collections.unmodifiableMap(extensions);
+			long modified = 0;
+			for (Extension extension : extensions.values())
+				modified = Math.max(modified, extension.modified);
+			this.modified = modified == 0 ? System.currentTimeMillis() : modified;
+		}
+
+		boolean isStale() {
+			for (Extension extension : extensions.values()) {
+				if (extension.isModified())
+					return true;
+			}
+			return false;
+		}
+
+		Catalog refresh() {
+			Map<String, Extension> refreshed = new LinkedHashMap<>();
+			for (Extension extension : extensions.values()) {
+				if (extension.isModified()) {
+					getLog().info("Extension " + extension.file + " has changed.");
+					try {
+						extension = new Extension(extension.key, extension.artifact, extension.file);
+					} catch (IOException ioe) {
+						/* Probably being rebuilt, try again on the next request */
+						getLog().debug("Failed to read changed extension " + extension.file, ioe);
+					}
+				}
+				refreshed.put(extension.key, extension);
+			}
+			return new Catalog(refreshed);
+		}
+
+		JsonResponse json(String target) {
+			/* A configured target replaces the requested one, so the response is the same for all */
+			if (!extensionTarget.equals(""))
+				target = "";
+			return json.computeIfAbsent(target, k -> {
+				JsonArrayBuilder resources = Json.createArrayBuilder();
+				for (Extension extension : extensions.values()) {
+					resources.add(extension.toJson(k));
+				}
+				return new JsonResponse(resourcesResponse(resources), modified);
+			});
+		}
+	}
+
+	/**
+	 * Watches the files being served, and the directory extensions are built
+	 * into, for changes. Once changes have settled, the changed extensions are
+	 * gathered again on the watcher's own thread and the catalog is replaced, so
+	 * requests are never held up. The watcher is created before the catalog is
+	 * first gathered, so changes made while that happens are not missed. If the
+	 * extensions directory does not exist yet, its nearest existing parent is
+	 * watched until it is created.
+	 */
+	class Watcher implements Runnable, Closeable {
+		private static final long QUIET_PERIOD = 500;
+
+		private final WatchService watchService;
+		private final Path extensionsPath;
+		private final Map<Path, String> keys = new HashMap<>();
+
+		Watcher() throws IOException {
+			extensionsPath = extensionsDirectory.toPath().toAbsolutePath().normalize();
+			watchService = FileSystems.getDefault().newWatchService();
+			try {
+				for (Map.Entry<String, Artifact> en : served.entrySet()) {
+					Artifact artifact = en.getValue();
+					Path file = artifact.getFile().toPath().toAbsolutePath().normalize();
+					keys.put(file, en.getKey());
+					keys.put(extensionsPath.resolve(artifact.getArtifactId())
+							.resolve(artifact.getArtifactId() + "-" + artifact.getBaseVersion() + ".zip"), en.getKey());
+					register(file.getParent());
+				}
+				watchExtensions(null);
+			} catch (IOException | RuntimeException e) {
+				watchService.close();
+				throw e;
+			}
+		}
+
+		@Override
+		public void run() {
+			try {
+				while (true) {
+					WatchKey key = watchService.take();
+					Set<Path> changed = new LinkedHashSet<>();
+					do {
+						collect(key, changed);
+						/* Files are written gradually, wait until they have been for a while */
+					} while ((key = watchService.poll(QUIET_PERIOD, TimeUnit.MILLISECONDS)) != null);
+					reload(changed);
+				}
+			} catch (InterruptedException | ClosedWatchServiceException e) {
+				/* Stopped */
+			}
+		}
+
+		@Override
+		public void close() throws IOException {
+			watchService.close();
+		}
+
+		private void collect(WatchKey key, Set<Path> changed) {
+			Path dir = (Path) key.watchable();
+			for (WatchEvent<?> event : key.pollEvents()) {
+				if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+					changed.addAll(keys.keySet());
+					continue;
+				}
+				Path path = dir.resolve((Path) event.context());
+				if (event.kind() == StandardWatchEventKinds.ENTRY_CREATE && Files.isDirectory(path)
+						&& (path.startsWith(extensionsPath) || extensionsPath.startsWith(path))) {
+					try {
+						if (path.startsWith(extensionsPath))
+							registerAll(path, changed);
+						else
+							watchExtensions(changed);
+					} catch (IOException ioe) {
+						getLog().debug("Failed to watch " + path, ioe);
+					}
+				}
+				changed.add(path);
+			}
+			key.reset();
+		}
+
+		private void reload(Set<Path> changed) {
+			Map<String, Path> updates = new LinkedHashMap<>();
+			for (Path path : changed) {
+				String key = keys.get(path);
+				if (key != null && Files.isRegularFile(path))
+					updates.put(key, path);
+			}
+			Catalog current = catalog;
+			Map<String, Extension> extensions = new LinkedHashMap<>(current.extensions);
+			boolean reloaded = false;
+			for (Map.Entry<String, Path> en : updates.entrySet()) {
+				Extension extension = extensions.get(en.getKey());
+				File file = en.getValue().toFile();
+				if (extension == null || file.equals(extension.file) && !extension.isModified())
+					continue;
+				try {
+					extensions.put(en.getKey(), new Extension(en.getKey(), extension.artifact, file));
+					getLog().info("Reloaded extension " + en.getKey() + " from " + file);
+					reloaded = true;
+				} catch (IOException ioe) {
+					/* Probably still being written, there will be another event */
+					getLog().debug("Failed to read changed extension " + file, ioe);
+				}
+			}
+			if (reloaded) {
+				synchronized (ExtensionStoreServerMojo.this) {
+					catalog = new Catalog(extensions);
+				}
+			}
+		}
+
+		private void register(Path dir) throws IOException {
+			dir.register(watchService, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY);
+		}
+
+		/**
+		 * Watch the extensions directory if it exists, otherwise its nearest
+		 * existing parent so we know when it is created.
+		 *
+		 * @param found collects files already in the directory
+		 * @throws IOException on error
+		 */
+		private void watchExtensions(Set<Path> found) throws IOException {
+			if (Files.isDirectory(extensionsPath)) {
+				registerAll(extensionsPath, found);
+			} else {
+				Path parent = extensionsPath.getParent();
+				while (parent != null && !Files.isDirectory(parent))
+					parent = parent.getParent();
+				if (parent != null)
+					register(parent);
+			}
+		}
+
+		private void registerAll(Path dir, Set<Path> found) throws IOException {
+			try (Stream<Path> paths = Files.walk(dir)) {
+				for (Path path : (Iterable<Path>) paths::iterator) {
+					if (Files.isDirectory(path))
+						register(path);
+					else if (found != null)
+						found.add(path);
+				}
+			}
 		}
 	}
 
@@ -82,32 +452,48 @@ public class ExtensionStoreServerMojo extends AbstractExtensionsMojo {
 	@Parameter(defaultValue = "", property = "extension-store.phase")
 	private String phaseName = "";
 
+	/**
+	 * Watch the extensions being served, and {@link #extensionsDirectory} (once
+	 * it exists), for changes, updating the catalog when extensions are rebuilt.
+	 * When off, each request checks whether any extension has changed instead.
+	 */
+	@Parameter(defaultValue = "true", property = "extension-store.watch")
+	private boolean watch = true;
+
+	/**
+	 * The directory extensions are built into. An extension rebuilt here
+	 * replaces the one being served if it has the same artifact ID and version.
+	 */
+	@Parameter(defaultValue = "${project.build.directory}/extensions", property = "extension-store.extensions")
+	private File extensionsDirectory;
+
+	/**
+	 * The number of threads used to gather information about extensions (mostly
+	 * their hashes) when the store starts. Defaults to the number of processors.
+	 */
+	@Parameter(property = "extension-store.hash-threads")
+	private int hashThreads = Runtime.getRuntime().availableProcessors();
+
 	private RootContext server;
-	private Map<String, Extension> map = new HashMap<>();
+	private Map<String, Artifact> served = new LinkedHashMap<>();
+	private volatile Catalog catalog;
+	private volatile IOException catalogFailure;
+	private final AtomicInteger gathered = new AtomicInteger();
 	private String actualPhaseName;
+	private JsonResponse privateResponse;
 
 	protected void onExecute() throws MojoExecutionException, MojoFailureException {
 		try {
 
-			Set<Artifact> artifacts = project.getArtifacts();
-			String firstVersion = null;
-			for (Artifact artifact : artifacts) {
+			List<Artifact> extensions = new ArrayList<>();
+			for (Artifact artifact : project.getArtifacts()) {
 				if (isProcessedGroup(artifact) && isJarExtension(artifact)) {
-					coordinate.setGroupId(artifact.getGroupId());
-					coordinate.setArtifactId(artifact.getArtifactId());
-					coordinate.setVersion(artifact.getVersion());
-					coordinate.setType("zip");
-					coordinate.setClassifier(EXTENSION_ARCHIVE);
-
-					try {
-						doCoordinate();
-						firstVersion = artifact.getVersion();
-					} catch (MojoFailureException | DependencyResolverException | ArtifactResolverException e) {
-						getLog().debug("Failed to process an artifact, assuming it's not an extension.", e);
-					}
+					extensions.add(artifact);
 				} else
 					getLog().debug(artifact.getId() + " is not an extension");
 			}
+			List<Artifact> resolved = resolveExtensionArchives(extensions);
+			String firstVersion = resolved.isEmpty() ? null : resolved.get(resolved.size() - 1).getVersion();
 
 			/* Calculate a phase name */
 			if (phaseName.equals("") || !phaseName.contains("_")) {
@@ -124,6 +510,9 @@ public class ExtensionStoreServerMojo extends AbstractExtensionsMojo {
 			} else {
 				actualPhaseName = phaseName;
 			}
+			privateResponse = new JsonResponse(resourcesResponse(Json.createArrayBuilder().add(Json.createObjectBuilder().add("version", getArtifactVersion(project.getArtifact()))
+					.add("publicPhase", true).add("name", actualPhaseName == null ? JsonValue.NULL : Json.createValue(actualPhaseName)))),
+					System.currentTimeMillis());
 
 			server = UHTTPD.server().
 					withHttp(port).
@@ -132,8 +521,15 @@ public class ExtensionStoreServerMojo extends AbstractExtensionsMojo {
 					get(".*/api/store/phases", this::handlePrivate).
 					get(".*/api/store/repos2/.*", this::store).
 					get(".*", tx -> {
-						if (map.containsKey(tx.uri())) {
-							tx.response("application/zip", map.get(tx.uri()).artifact.getFile());
+						var current = getCatalog();
+						if (current == null) {
+							notReady(tx);
+							return;
+						}
+						var extension = current.extensions.get(tx.uri());
+						if (extension != null) {
+							StoreHttp.sendFile(tx, "application/zip", extension.file,
+									StoreHttp.etag(extension.hash), extension.modified);
 						} else {
 							throw new FileNotFoundException(
 									"This extension store only serves the version of the project it is run from, "
@@ -141,15 +537,103 @@ public class ExtensionStoreServerMojo extends AbstractExtensionsMojo {
 						}
 					}).
 					build();
-			
-			getLog().info("Starting extension store server, press Ctrl+C to stop.");
+
+			getLog().info("Starting extension store server on port " + port + ", press Ctrl+C to stop.");
 			getLog().info("Service phase: " + actualPhaseName);
-			server.run();
+			Watcher watcher = watch ? new Watcher() : null;
+			Thread gatherer = new Thread(() -> {
+				try {
+					catalog = gatherCatalog();
+				} catch (IOException ioe) {
+					catalogFailure = ioe;
+					getLog().error("Failed to build extension catalog.", ioe);
+					return;
+				}
+				if (watcher != null) {
+					Thread thread = new Thread(watcher, "ExtensionStoreWatcher");
+					thread.setDaemon(true);
+					thread.start();
+					getLog().info("Watching for changes to extensions and " + extensionsDirectory);
+				}
+			}, "ExtensionStoreCatalog");
+			gatherer.setDaemon(true);
+			gatherer.start();
+			try {
+				server.run();
+			} finally {
+				if (watcher != null)
+					watcher.close();
+			}
 		} catch (IOException ioe) {
 			throw new MojoExecutionException("Failed to start extension store server.", ioe);
 		}
 	}
 
+	/**
+	 * Gather everything about the extensions being served (most expensively,
+	 * their hashes) using {@link #hashThreads} threads, while the server is
+	 * already accepting requests. Progress is logged as it goes.
+	 *
+	 * @return catalog
+	 * @throws IOException on error
+	 */
+	Catalog gatherCatalog() throws IOException {
+		long started = System.currentTimeMillis();
+		int total = served.size();
+		getLog().info("Building catalog of " + total + " extensions.");
+		AtomicLong bytes = new AtomicLong();
+		ExecutorService executor = Executors.newFixedThreadPool(Math.max(1, Math.min(hashThreads, total)), r -> {
+			Thread t = new Thread(r, "ExtensionHasher");
+			t.setDaemon(true);
+			return t;
+		});
+		try {
+			Map<String, Future<Extension>> futures = new LinkedHashMap<>();
+			for (Map.Entry<String, Artifact> en : served.entrySet()) {
+				futures.put(en.getKey(), executor.submit(() -> {
+					Extension extension = new Extension(en.getKey(), en.getValue(), en.getValue().getFile());
+					bytes.addAndGet(extension.size);
+					int n = gathered.incrementAndGet();
+					if (n * 10 / total != (n - 1) * 10 / total)
+						getLog().info(String.format("Gathered %d of %d extensions.", n, total));
+					return extension;
+				}));
+			}
+			Map<String, Extension> extensionMap = new LinkedHashMap<>();
+			for (Map.Entry<String, Future<Extension>> en : futures.entrySet()) {
+				extensionMap.put(en.getKey(), en.getValue().get());
+			}
+			getLog().info(String.format("Extension store ready, serving %d extensions (%d MiB hashed in %d ms).",
+					total, bytes.get() / 1024 / 1024, System.currentTimeMillis() - started));
+			return new Catalog(extensionMap);
+		} catch (InterruptedException ie) {
+			throw new InterruptedIOException("Interrupted while building catalog.");
+		} catch (ExecutionException ee) {
+			if (ee.getCause() instanceof IOException)
+				throw (IOException) ee.getCause();
+			throw new IOException("Failed to build catalog.", ee.getCause());
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+
+	/**
+	 * Respond to a request that needs the catalog before it is ready.
+	 *
+	 * @param tx transaction
+	 */
+	void notReady(Transaction tx) {
+		tx.responseCode(Status.SERVICE_UNAVAILABLE);
+		IOException failure = catalogFailure;
+		if (failure != null) {
+			tx.response("text/plain", "Extension store failed to build its catalog. " + failure.getMessage());
+		} else {
+			tx.header("Retry-After", "1");
+			tx.response("text/plain", String.format("Extension store is starting, gathered %d of %d extensions.",
+					gathered.get(), served.size()));
+		}
+	}
+
 	@Override
 	protected void doHandleResult(ArtifactResult result)
 			throws MojoExecutionException, DependencyResolverException, ArtifactResolverException, IOException {
@@ -162,11 +646,7 @@ public class ExtensionStoreServerMojo extends AbstractExtensionsMojo {
 				+ ".zip";
 		getLog().info("Mapping " + artifact + " to " + key);
 
-		try (InputStream in = new FileInputStream(artifact.getFile())) {
-			String hash = DigestUtils.md5Hex(in);
-			map.put(key, new Extension(artifact, hash));
-		}
-
+		served.put(key, artifact);
 	}
 
 	@Override
@@ -182,103 +662,41 @@ public class ExtensionStoreServerMojo extends AbstractExtensionsMojo {
 		
 
 		getLog().debug(String.format("Getting version: %s", version));
-		JsonArrayBuilder resources = Json.createArrayBuilder();
-		for (Map.Entry<String, Extension> en : map.entrySet()) {
-			JsonObjectBuilder resource = Json.createObjectBuilder();
-			Extension extension = en.getValue();
-			Artifact artifact = extension.artifact;
-			String artifactVersion = getArtifactVersion(artifact);
-			String unprocessedArtifactVersion = artifact.getVersion();
-			getLog().debug(String.format("Comparing versions: %s and %s (%s)", version, artifactVersion,
-					unprocessedArtifactVersion));
-//			if (version.equals(artifactVersion) || version.equals(unprocessedArtifactVersion)) {
-
-			File file = artifact.getFile();
-			var pluginProperties = new Properties();
-			try {
-				pluginProperties.putAll(Plugins.getPluginProperties(file.toPath()));
 
-			} catch (Exception e) {
-			}
-			var extensionProperties = new Properties();
-			try {
-				Plugins.getExtensionProperties(file.toPath()).forEach((k, v) -> {
-					extensionProperties.putIfAbsent(k, v);
-				});
-			} catch (Exception e2) {
-			}
-			var mavenProperties = new Properties();
-			try {
-				Plugins.getDefaultMavenManifestProperties(file.toPath()).forEach((k, v) -> {
-					mavenProperties.putIfAbsent(k, v);
-				});
-			} catch (Exception e) {
-			}
-
-			var defaultProperties = new Properties();
-			defaultProperties.put("id", artifact.getArtifactId());
+		/* Resource response */
+		var current = getCatalog();
+		if (current == null) {
+			notReady(tx);
+			return;
+		}
+		current.json(target).send(tx);
+	}
 
-			if(getLog().isDebugEnabled()) {
-				getLog().info("Properties from " + file + " are ");
-				pluginProperties.forEach((k, v) -> {
-					getLog().info("   " + k + " = " + v);
-				});
-				extensionProperties.forEach((k, v) -> {
-					getLog().info("   " + k + " = " + v);
-				});
-				mavenProperties.forEach((k, v) -> {
-					getLog().info("   " + k + " = " + v);
-				});
-				defaultProperties.forEach((k, v) -> {
-					getLog().info("   " + k + " = " + v);
-				});
+	/**
+	 * Get the catalog. If not watching for changes, it is first replaced if any
+	 * of the extensions in it have changed.
+	 *
+	 * @return catalog, or <code>null</code> if it is still being built
+	 */
+	Catalog getCatalog() {
+		Catalog current = catalog;
+		if (!watch && current != null && current.isStale()) {
+			synchronized (this) {
+				current = catalog;
+				if (current.isStale()) {
+					catalog = current = current.refresh();
+				}
 			}
-			
-			var plist = Arrays.asList(pluginProperties, extensionProperties, mavenProperties, defaultProperties);
-			var name = getBestProperty(artifact.getGroupId() + ":" + artifact.getArtifactId(), plist, "x.plugin.name", "extension.name", "name");
-			name = name.replaceFirst("^Hypersocket - ", "");
-			name = name.replaceFirst("^LogonBox - ", "");
-			name = name.replaceFirst("^SSHTools - ", "");
-			name = name.replaceFirst("^Nervepoint - ", "");
-
-			resource.add("size", file.length());
-			resource.add("url", en.getKey());
-			resource.add("filename", FilenameUtils.getName(en.getKey()));
-			resource.add("repositoryDescription", description);
-			resource.add("modifiedDate", file.lastModified());
-			resource.add("version", getBestProperty(artifactVersion, plist, "plugin.version", "extension.version", "version"));
-			resource.add("hash", extension.hash);
-			resource.add("extensionId",
-					getBestProperty(artifact.getArtifactId(), plist, "plugin.id", "extension.id", "artifactId"));
-			resource.add("state", "NOT_INSTALLED");
-			resource.add("target", extensionTarget.equals("") ? target : extensionTarget);
-			resource.add("mandatory", getBestProperty("false", plist, "x.plugin.mandatory", "extension.mandatory"));
-			resource.add("weight", 0);
-			resource.add("tab", tab);
-			resource.add("type", pluginProperties.isEmpty() ? "EXTENSION" : "PLUGIN");
-			resource.add("extensionName", name);
-			resource.add("description",
-					getBestProperty(name, plist, "plugin.description", "extension.description", "description"));
-			var dep = getBestProperty("", plist, "plugin.dependencies", "extension.depends");
-			resource.add("dependsOn", dep.equals("") ? Json.createArrayBuilder()
-					: Json.createArrayBuilder(Arrays.asList(dep.split(","))));
-
-			resources.add(resource);
-//			}
-
 		}
-
-		/* Resource response */
-		tx.response("text/json", resourcesResponse(resources));
+		return current;
 	}
 
-	Object resourcesResponse(JsonArrayBuilder resources) throws UnsupportedEncodingException {
+	JsonObject resourcesResponse(JsonArrayBuilder resources) {
 		return Json.createObjectBuilder().add("success", true).add("confirmation", false).add("message", "")
 				.add("properties", Json.createObjectBuilder()).add("resources", resources).build();
 	}
 
 	void handlePrivate(Transaction tx) throws IOException {
-		tx.response("text/json", resourcesResponse(Json.createArrayBuilder().add(Json.createObjectBuilder().add("version", getArtifactVersion(project.getArtifact()))
-				.add("publicPhase", true).add("name", actualPhaseName))));
+		privateResponse.send(tx);
 	}
 }
\ No newline at end of file
@@ -0,0 +1,149 @@
+package com.logonbox.maven.plugins.generator;
+
+import java.io.IOException;
+import java.nio.file.FileStore;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Locale;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Utilities for placing a file at another location as cheaply as possible.
+ */
+public class FileLinks {
+
+	/**
+	 * How to place a file at another location. Each strategy falls back to the
+	 * next one when the file system does not support it.
+	 */
+	public enum Strategy {
+		/**
+		 * A copy-on-write clone, which shares storage with the source until either
+		 * is changed (e.g. on Btrfs, XFS, ZFS and APFS).
+		 */
+		REFLINK,
+		/**
+		 * A hard link, which shares storage with the source.
+		 */
+		LINK,
+		/**
+		 * A plain copy.
+		 */
+		COPY
+	}
+
+	private static final boolean MAC = System.getProperty("os.name", "").toLowerCase(Locale.ROOT).contains("mac");
+	static final boolean WINDOWS = System.getProperty("os.name", "").toLowerCase(Locale.ROOT)
+			.contains("windows");
+	private static final ConcurrentMap<FileStore, Boolean> noReflink = new ConcurrentHashMap<>();
+
+	private FileLinks() {
+	}
+
+	/**
+	 * Make <code>target</code> have the same content as <code>source</code>, by
+	 * creating a hard link if the file system allows it, or by copying
+	 * otherwise. Any existing target is replaced. Because the result may share
+	 * storage with the source, it must be replaced rather than written to in
+	 * place.
+	 *
+	 * @param source source
+	 * @param target target
+	 * @return <code>true</code> if linked, <code>false</code> if copied
+	 * @throws IOException on error
+	 */
+	public static boolean linkOrCopy(Path source, Path target) throws IOException {
+		return publish(source, target, Strategy.LINK) == Strategy.LINK;
+	}
+
+	/**
+	 * Make <code>target</code> have the same content as <code>source</code>,
+	 * using the given strategy, or failing that the next cheapest one the file
+	 * system supports. Any existing target is replaced, and the target always has
+	 * the same modification time as the source. As with
+	 * {@link #linkOrCopy(Path, Path)}, if the result may be a hard link, the
+	 * source and target must afterwards be replaced rather than written to in
+	 * place.
+	 *
+	 * @param source   source
+	 * @param target   target
+	 * @param strategy strategy to try first
+	 * @return strategy actually used
+	 * @throws IOException on error
+	 */
+	public static Strategy publish(Path source, Path target, Strategy strategy) throws IOException {
+		return publish(source, target, strategy, true);
+	}
+
+	/**
+	 * Make <code>target</code> have the same content as <code>source</code>, as
+	 * {@link #publish(Path, Path, Strategy)}, optionally without falling back
+	 * from {@link Strategy#REFLINK} to {@link Strategy#LINK}. This is for
+	 * targets that should never share storage (and so changes) with the
+	 * source, unless a link was explicitly asked for.
+	 *
+	 * @param source       source
+	 * @param target       target
+	 * @param strategy     strategy to try first
+	 * @param linkFallback whether a failed clone may fall back to a hard link
+	 * @return strategy actually used
+	 * @throws IOException on error
+	 */
+	public static Strategy publish(Path source, Path target, Strategy strategy, boolean linkFallback)
+			throws IOException {
+		if (!Files.exists(source))
+			throw new IOException(String.format("%s does not exist.", source));
+		Files.deleteIfExists(target);
+		if (strategy == Strategy.REFLINK) {
+			if (reflink(source, target))
+				return Strategy.REFLINK;
+			strategy = linkFallback ? Strategy.LINK : Strategy.COPY;
+		}
+		if (strategy == Strategy.LINK) {
+			try {
+				Files.createLink(target, source);
+				return Strategy.LINK;
+			} catch (UnsupportedOperationException | IOException e) {
+				/* Different file stores, or not supported at all */
+			}
+		}
+		Files.copy(source, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.COPY_ATTRIBUTES);
+		return Strategy.COPY;
+	}
+
+	/*
+	 * Java has no API for this, so use the operating system's cp. Clones cannot
+	 * span file stores, and once a file store is found not to support them, they
+	 * are not tried there again.
+	 */
+	private static boolean reflink(Path source, Path target) throws IOException {
+		if (WINDOWS)
+			return false;
+		FileStore store = Files.getFileStore(source);
+		if (noReflink.containsKey(store) || !store.equals(Files.getFileStore(target.toAbsolutePath().getParent())))
+			return false;
+		ProcessBuilder pb = MAC
+				? new ProcessBuilder("cp", "-c", "-p", source.toString(), target.toString())
+				: new ProcessBuilder("cp", "--reflink=always", "--preserve=timestamps", source.toString(),
+						target.toString());
+		pb.redirectErrorStream(true);
+		pb.redirectOutput(ProcessBuilder.Redirect.DISCARD);
+		try {
+			Process p = pb.start();
+			if (p.waitFor(1, TimeUnit.MINUTES) && p.exitValue() == 0)
+				return true;
+			p.destroyForcibly();
+		} catch (IOException ioe) {
+			/* No cp */
+		} catch (InterruptedException ie) {
+			Thread.currentThread().interrupt();
+			throw new IOException("Interrupted.", ie);
+		}
+		noReflink.put(store, Boolean.TRUE);
+		Files.deleteIfExists(target);
+		return false;
+	}
+}
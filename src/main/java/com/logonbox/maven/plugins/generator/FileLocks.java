@@ -0,0 +1,184 @@
+package com.logonbox.maven.plugins.generator;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Blocking shared (read) and exclusive (write) locks on a file, that work both
+ * between processes and between threads of this process.
+ * <p>
+ * An operating system file lock is held by the whole process, and the JVM does
+ * not allow the same file to be locked twice, so threads first coordinate with
+ * an in-process read/write lock. Shared holders then share a single shared file
+ * lock, which is taken by the first and released by the last.
+ */
+public final class FileLocks {
+
+	/**
+	 * A held lock.
+	 */
+	public interface Lock extends Closeable {
+
+		/**
+		 * Get how long was spent waiting for the lock.
+		 *
+		 * @return nanoseconds
+		 */
+		long getWaitNanos();
+
+		@Override
+		void close() throws IOException;
+	}
+
+	private static final class Holder {
+		final ReentrantReadWriteLock rw = new ReentrantReadWriteLock();
+		FileChannel channel;
+		FileLock sharedLock;
+		int shared;
+	}
+
+	private static final ConcurrentMap<Path, Holder> HOLDERS = new ConcurrentHashMap<>();
+
+	private FileLocks() {
+	}
+
+	/**
+	 * Take a shared lock on a file, waiting for any exclusive lock to be released.
+	 * The file is created if it does not exist.
+	 *
+	 * @param file file
+	 * @return lock
+	 * @throws IOException on error
+	 */
+	public static Lock shared(Path file) throws IOException {
+		long started = System.nanoTime();
+		Holder holder = holder(file);
+		try {
+			holder.rw.readLock().lockInterruptibly();
+		} catch (InterruptedException e) {
+			throw new InterruptedIOException("Interrupted waiting for lock on " + file);
+		}
+		try {
+			synchronized (holder) {
+				if (holder.shared == 0) {
+					FileChannel channel = open(file);
+					try {
+						holder.sharedLock = channel.lock(0, Long.MAX_VALUE, true);
+					} catch (IOException | RuntimeException e) {
+						channel.close();
+						throw e;
+					}
+					holder.channel = channel;
+				}
+				holder.shared++;
+			}
+		} catch (IOException | RuntimeException e) {
+			holder.rw.readLock().unlock();
+			throw e;
+		}
+		long waited = System.nanoTime() - started;
+		return new Lock() {
+			private boolean closed;
+
+			@Override
+			public long getWaitNanos() {
+				return waited;
+			}
+
+			@Override
+			public void close() throws IOException {
+				if (closed)
+					return;
+				closed = true;
+				try {
+					synchronized (holder) {
+						if (--holder.shared == 0) {
+							try {
+								holder.sharedLock.release();
+							} finally {
+								holder.sharedLock = null;
+								holder.channel.close();
+								holder.channel = null;
+							}
+						}
+					}
+				} finally {
+					holder.rw.readLock().unlock();
+				}
+			}
+		};
+	}
+
+	/**
+	 * Take an exclusive lock on a file, waiting for all other locks to be
+	 * released. The file is created if it does not exist.
+	 *
+	 * @param file file
+	 * @return lock
+	 * @throws IOException on error
+	 */
+	public static Lock exclusive(Path file) throws IOException {
+		long started = System.nanoTime();
+		Holder holder = holder(file);
+		try {
+			holder.rw.writeLock().lockInterruptibly();
+		} catch (InterruptedException e) {
+			throw new InterruptedIOException("Interrupted waiting for lock on " + file);
+		}
+		FileChannel channel;
+		FileLock lock;
+		try {
+			channel = open(file);
+			try {
+				lock = channel.lock();
+			} catch (IOException | RuntimeException e) {
+				channel.close();
+				throw e;
+			}
+		} catch (IOException | RuntimeException e) {
+			holder.rw.writeLock().unlock();
+			throw e;
+		}
+		long waited = System.nanoTime() - started;
+		return new Lock() {
+			private boolean closed;
+
+			@Override
+			public long getWaitNanos() {
+				return waited;
+			}
+
+			@Override
+			public void close() throws IOException {
+				if (closed)
+					return;
+				closed = true;
+				try {
+					try {
+						lock.release();
+					} finally {
+						channel.close();
+					}
+				} finally {
+					holder.rw.writeLock().unlock();
+				}
+			}
+		};
+	}
+
+	private static Holder holder(Path file) {
+		return HOLDERS.computeIfAbsent(file.toAbsolutePath().normalize(), k -> new Holder());
+	}
+
+	private static FileChannel open(Path file) throws IOException {
+		return FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+	}
+}
@@ -17,19 +17,15 @@ package com.logonbox.maven.plugins.generator;
  * limitations under the License.
  */
 
+import java.io.BufferedOutputStream;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileNotFoundException;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
-import java.io.ObjectInputStream;
 import java.io.OutputStream;
-import java.io.RandomAccessFile;
-import java.nio.channels.Channels;
-import java.nio.channels.FileChannel;
-import java.nio.channels.FileLock;
-import java.nio.channels.OverlappingFileLockException;
+import java.nio.file.Files;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.HashSet;
@@ -37,10 +33,7 @@ import java.util.List;
 import java.util.Map;
 import java.util.Properties;
 import java.util.Set;
-import java.util.zip.ZipEntry;
-import java.util.zip.ZipOutputStream;
 
-import org.apache.commons.codec.digest.DigestUtils;
 import org.apache.maven.artifact.Artifact;
 import org.apache.maven.plugin.MojoExecutionException;
 import org.apache.maven.plugin.MojoFailureException;
@@ -56,7 +49,6 @@ import org.apache.maven.shared.transfer.artifact.resolve.ArtifactResult;
 import org.apache.maven.shared.transfer.dependencies.DefaultDependableCoordinate;
 import org.apache.maven.shared.transfer.dependencies.resolve.DependencyResolverException;
 import org.codehaus.plexus.util.FileUtils;
-import org.codehaus.plexus.util.IOUtil;
 import org.codehaus.plexus.util.StringUtils;
 import org.sonatype.inject.Description;
 
@@ -139,7 +131,6 @@ public class GeneratePluginMojo extends AbstractExtensionsMojo {
 
 	private List<Artifact> extraArtifacts = new ArrayList<>();
 
-	@SuppressWarnings("unchecked")
 	protected void onExecute() throws MojoExecutionException, MojoFailureException {
 		if (skipPoms && "pom".equals(project.getPackaging())) {
 			getLog().info("Skipping POM project " + project.getName());
@@ -149,8 +140,8 @@ public class GeneratePluginMojo extends AbstractExtensionsMojo {
 		getLog().info(project.getBasedir().getAbsolutePath());
 		getLog().info(project.getExecutionProject().getBasedir().getAbsolutePath());
 
-		File allDependenciesFile = new File(project.getBasedir().getParentFile(),
-				resolvedDependenciesProject + File.separator + "target" + File.separator + "dependencies.ser");
+		File allDependenciesFile = DependencyMap.locate(new File(project.getBasedir().getParentFile(),
+				resolvedDependenciesProject + File.separator + "target"));
 
 		getLog().info("Using all dependencies file " + allDependenciesFile.getAbsolutePath());
 
@@ -191,74 +182,60 @@ public class GeneratePluginMojo extends AbstractExtensionsMojo {
 				coordinate = new DefaultDependableCoordinate();
 			}
 
-			try (@SuppressWarnings("resource")
-			FileChannel channel = new RandomAccessFile(allDependenciesFile, "rw").getChannel()) {
-				InputStream in = Channels.newInputStream(channel);
-				FileLock lock = getLock(channel);
-				try {
+			DependencyMap allDependencies = readDependencyMap(allDependenciesFile);
+			Map<String, String> versionMap = allDependencies.versions();
+			Map<String, File> artifactMap = allDependencies.files();
 
-					ObjectInputStream obj = new ObjectInputStream(in);
-					Map<String, String> versionMap = (Map<String, String>) obj.readObject();
-					Map<String, File> artifactMap = (Map<String, File>) obj.readObject();
-
-					Map<String, String> coreVersionMap = new HashMap<String, String>();
-
-					if (dependencies != null) {
-						for (String dependency : dependencies) {
-
-							File dependencyFile = new File(project.getBasedir().getParentFile(),
-									dependency + File.separator + "target" + File.separator + "dependencies.ser");
-							if (dependencyFile.exists()) {
-
-								try (@SuppressWarnings("resource")
-								FileChannel channel2 = new RandomAccessFile(dependencyFile, "rw").getChannel()) {
-									InputStream in2 = Channels.newInputStream(channel2);
-									FileLock lock2 = getLock(channel2);
-									try {
-										ObjectInputStream obj2 = new ObjectInputStream(in2);
-										coreVersionMap.putAll((Map<String, String>) obj2.readObject());
-									} finally {
-										lock2.release();
-									}
-								}
-							} else {
-								getLog().info(dependencyFile.getAbsolutePath() + " does not exist");
-							}
-						}
-					}
+			List<Map<String, String>> coreVersionMaps = new ArrayList<>();
 
-					if (ignores != null) {
-						for (String ignore : ignores) {
-							coreVersionMap.put(ignore, "IGNORED");
-							versionMap.put(ignore, "IGNORED");
-						}
+			if (dependencies != null) {
+				for (String dependency : dependencies) {
+
+					File dependencyFile = DependencyMap.locate(new File(project.getBasedir().getParentFile(),
+							dependency + File.separator + "target"));
+					if (dependencyFile.exists()) {
+						coreVersionMaps.add(readDependencyMap(dependencyFile).versions());
+					} else {
+						getLog().info(dependencyFile.getAbsolutePath() + " does not exist");
 					}
+				}
+			}
 
-					File storeTarget = new File(project.getParent().getBasedir(),
-							"target" + File.separator + "extensions" + File.separator + project.getArtifactId()
-									+ File.separator + project.getArtifactId() + "-" + project.getVersion() + ".zip");
+			if (ignores != null) {
+				Map<String, String> ignored = new HashMap<>();
+				for (String ignore : ignores) {
+					ignored.put(ignore, "IGNORED");
+				}
+				coreVersionMaps.add(ignored);
+				versionMap = DependencyMap.layered(versionMap, ignored);
+			}
+			Map<String, String> coreVersionMap = DependencyMap.layered(coreVersionMaps);
 
-					storeTarget.getParentFile().mkdirs();
+			File storeTarget = new File(project.getParent().getBasedir(),
+					"target" + File.separator + "extensions" + File.separator + project.getArtifactId()
+							+ File.separator + project.getArtifactId() + "-" + project.getVersion() + ".zip");
 
-					File extensionDef = new File(project.getBasedir(),
-							"target" + File.separator + "extension-def" + File.separator + project.getArtifactId());
-					extensionDef.mkdirs();
+			storeTarget.getParentFile().mkdirs();
 
-					File sourceDef = new File(project.getBasedir(),
-							"target" + File.separator + "classes" + File.separator + "extension.def");
-					Properties sourceProperties = new Properties();
-					try (InputStream pin = new FileInputStream(sourceDef)) {
-						sourceProperties.load(pin);
-					}
-					if (!sourceProperties.containsKey("extension.description")) {
-						sourceProperties.setProperty("extension.description",
-								project.getDescription() == null ? (project.getName() == null ? "" : project.getName())
-										: project.getDescription());
-					}
-					if (!sourceProperties.containsKey("extension.name")) {
-						sourceProperties.setProperty("extension.name",
-								project.getName() == null ? "" : project.getName());
-					}
+			File extensionDef = new File(project.getBasedir(),
+					"target" + File.separator + "extension-def" + File.separator + project.getArtifactId());
+			extensionDef.mkdirs();
+
+			File sourceDef = new File(project.getBasedir(),
+					"target" + File.separator + "classes" + File.separator + "extension.def");
+			Properties sourceProperties = new Properties();
+			try (InputStream pin = new FileInputStream(sourceDef)) {
+				sourceProperties.load(pin);
+			}
+			if (!sourceProperties.containsKey("extension.description")) {
+				sourceProperties.setProperty("extension.description",
+						project.getDescription() == null ? (project.getName() == null ? "" : project.getName())
+								: project.getDescription());
+			}
+			if (!sourceProperties.containsKey("extension.name")) {
+				sourceProperties.setProperty("extension.name",
+						project.getName() == null ? "" : project.getName());
+			}
 
 // TODO can we generate some others from POM information? license for example
 //					extension.id=x-hypersocket-brand
@@ -272,70 +249,82 @@ public class GeneratePluginMojo extends AbstractExtensionsMojo {
 //							extension.system=false
 
 
-					File sourceImage = new File(project.getBasedir(), "target" + File.separator + "classes"
-							+ File.separator + sourceProperties.getProperty("extension.image"));
+			File sourceImage = new File(project.getBasedir(), "target" + File.separator + "classes"
+					+ File.separator + sourceProperties.getProperty("extension.image"));
 
-					if (sourceImage.exists()) {
-						File destImage = new File(extensionDef, sourceProperties.getProperty("extension.image"));
-						FileUtils.copyFile(sourceImage, destImage);
-					}
-
-					File zipfile = new File(extensionDef,
-							project.getArtifactId() + "-" + project.getVersion() + ".zip");
+			if (sourceImage.exists()) {
+				File destImage = new File(extensionDef, sourceProperties.getProperty("extension.image"));
+				FileUtils.copyFile(sourceImage, destImage);
+			}
 
+			File zipfile = new File(extensionDef,
+					project.getArtifactId() + "-" + project.getVersion() + ".zip");
 
-					List<Artifact> artifacts = new ArrayList<>();
 
-					getLog().info("Adding " + extraArtifacts.size() + " extra artifacts ");
-					artifacts.addAll(extraArtifacts);
+			List<Artifact> artifacts = new ArrayList<>();
 
-					getLog().info("Adding " + project.getArtifacts().size() + " primary artifacts ");
-					artifacts.addAll(project.getArtifacts());
-					
+			getLog().info("Adding " + extraArtifacts.size() + " extra artifacts ");
+			artifacts.addAll(extraArtifacts);
 
-					Map<String, List<String>> appendFolderMap = new HashMap<String, List<String>>();
+			getLog().info("Adding " + project.getArtifacts().size() + " primary artifacts ");
+			artifacts.addAll(project.getArtifacts());
+			
 
-					if (appendFolders != null) {
-						for (String af : appendFolders) {
-							int idx = af.indexOf('=');
-							String artifactId = af.substring(0, idx);
-							String folder = af.substring(idx + 1);
+			Map<String, List<String>> appendFolderMap = new HashMap<String, List<String>>();
 
-							getLog().info("Will append folder " + folder + " to artifact " + artifactId);
+			if (appendFolders != null) {
+				for (String af : appendFolders) {
+					int idx = af.indexOf('=');
+					String artifactId = af.substring(0, idx);
+					String folder = af.substring(idx + 1);
 
-							if (!appendFolderMap.containsKey(artifactId)) {
-								appendFolderMap.put(artifactId, new ArrayList<String>());
-							}
+					getLog().info("Will append folder " + folder + " to artifact " + artifactId);
 
-							appendFolderMap.get(artifactId).add(folder);
-						}
+					if (!appendFolderMap.containsKey(artifactId)) {
+						appendFolderMap.put(artifactId, new ArrayList<String>());
 					}
-					
-					generateLegacyZip(versionMap, artifactMap, coreVersionMap, sourceProperties, zipfile, artifacts, appendFolderMap, extensionDef);
 
-					// Generate an MD5 hash
-					File md5File = new File(extensionDef,
-							project.getArtifactId() + "-" + project.getVersion() + ".md5");
+					appendFolderMap.get(artifactId).add(folder);
+				}
+			}
 
-					try (FileInputStream zin = new FileInputStream(zipfile)) {
-						FileUtils.fileWrite(md5File.getAbsolutePath(), DigestUtils.md5Hex(zin));
-					}
+			File md5File = new File(extensionDef,
+					project.getArtifactId() + "-" + project.getVersion() + ".md5");
+			File checksumsFile = new File(extensionDef,
+					project.getArtifactId() + "-" + project.getVersion() + ".checksums.json");
+
+			BuildFingerprint fingerprint = new BuildFingerprint(zipfile);
+			fingerprint.add("compression", getCompressionPolicy());
+			fingerprint.add("checksums", getChecksumAlgorithms());
+			fingerprint.add("extension.def", sourceProperties);
+			fingerprint.file("project", project.getArtifact().getFile());
+			fingerprint.file("image", sourceImage);
+			fingerprint.file("i18n", new File(project.getBasedir(),
+					"target" + File.separator + "classes" + File.separator + "i18n"));
+			if (archiveFiles != null) {
+				for (File file : archiveFiles) {
+					fingerprint.file("archive-file " + file, file);
+				}
+			}
+			fingerprintArtifacts(fingerprint, artifacts, versionMap, artifactMap, coreVersionMap, appendFolderMap);
 
-					try (FileInputStream zin = new FileInputStream(md5File)) {
-						getLog().info("MD5 sum value is " + IOUtil.toString(zin));
-					}
+			if (incremental && fingerprint.isCurrent(zipfile, md5File, checksumsFile, storeTarget)) {
+				getLog().info("Archive " + zipfile + " is up to date, nothing has changed since it was built.");
+			} else {
+				fingerprint.invalidate();
 
-					getLog().info("Copying archive to local store " + storeTarget.getAbsolutePath());
+				Map<String, String> digests = generateLegacyZip(versionMap, artifactMap, coreVersionMap, sourceProperties, zipfile, artifacts, appendFolderMap, extensionDef);
+				writeChecksums(zipfile, digests, md5File, checksumsFile);
 
-					FileUtils.copyFile(zipfile, storeTarget);
+				FileLinks.Strategy published = FileLinks.publish(zipfile.toPath(), storeTarget.toPath(), publishStrategy);
+				getLog().info("Published archive to local store " + storeTarget.getAbsolutePath() + " (" + published + ")");
 
-					if (attach) {
-						getLog().info("Attaching artifact as extension-archive zip");
-						projectHelper.attachArtifact(project, "zip", "extension-archive", storeTarget);
-					}
-				} finally {
-					lock.release();
-				}
+				fingerprint.save();
+			}
+
+			if (attach) {
+				getLog().info("Attaching artifact as extension-archive zip");
+				projectHelper.attachArtifact(project, "zip", "extension-archive", storeTarget);
 			}
 
 		} catch (Exception e) {
@@ -344,7 +333,7 @@ public class GeneratePluginMojo extends AbstractExtensionsMojo {
 		}
 	}
 
-	protected void generateLegacyZip(Map<String, String> versionMap, Map<String, File> artifactMap,
+	protected Map<String, String> generateLegacyZip(Map<String, String> versionMap, Map<String, File> artifactMap,
 			Map<String, String> coreVersionMap, Properties sourceProperties, File zipfile, List<Artifact> artifacts, Map<String, List<String>> appendFolderMap, File extensionDef) throws IOException, FileNotFoundException {
 		File sourceI18n = new File(project.getBasedir(),
 				"target" + File.separator + "classes" + File.separator + "i18n");
@@ -357,29 +346,22 @@ public class GeneratePluginMojo extends AbstractExtensionsMojo {
 			sourceProperties.store(pin, "Processed by logonbox-plugin-generator");
 		}
 		
-		try (ZipOutputStream zip = new ZipOutputStream(new FileOutputStream(zipfile))) {
+		/* A new file, as the old one may be linked to the local store */
+		Files.deleteIfExists(zipfile.toPath());
+		/* Digest below the buffer, so the digests are updated a block at a time */
+		DigestingOutputStream digestOut = new DigestingOutputStream(new FileOutputStream(zipfile),
+				getChecksumAlgorithms());
+		ArchiveWriter zip = new ArchiveWriter(new BufferedOutputStream(digestOut, 65536), getCompressionPolicy());
+		try (zip) {
 
-			ZipEntry e = new ZipEntry(project.getArtifactId() + "/");
-			zip.putNextEntry(e);
+			zip.directory(project.getArtifactId() + "/");
 
-			e = new ZipEntry(project.getArtifactId() + "/extension.def");
-			zip.putNextEntry(e);
-			try (FileInputStream fin = new FileInputStream(destDef)) {
-				IOUtil.copy(fin, zip);
-			}
-			zip.closeEntry();
+			zip.file(project.getArtifactId() + "/extension.def", destDef);
 
 			var art = project.getArtifact();
 			getLog().info("Adding project artifact " + art.getFile().getName());
 
-			e = new ZipEntry(project.getArtifactId() + "/" + getOutName(art));
-			zip.putNextEntry(e);
-
-			try (FileInputStream fin = new FileInputStream(art.getFile())) {
-				IOUtil.copy(fin, zip);
-			}
-
-			zip.closeEntry();
+			zip.file(project.getArtifactId() + "/" + getOutName(art), art.getFile());
 			Set<String> addedPaths = new HashSet<String>();
 
 			for (Artifact a : artifacts) {
@@ -448,15 +430,7 @@ public class GeneratePluginMojo extends AbstractExtensionsMojo {
 
 						addedPaths.add(path);
 
-						e = new ZipEntry(path);
-
-						zip.putNextEntry(e);
-
-						try (FileInputStream fin = new FileInputStream(resolvedFile)) {
-							IOUtil.copy(fin, zip);
-						}
-
-						zip.closeEntry();
+						zip.file(path, resolvedFile);
 					}
 
 				} else {
@@ -472,16 +446,7 @@ public class GeneratePluginMojo extends AbstractExtensionsMojo {
 
 					addedPaths.add(path);
 
-					e = new ZipEntry(path);
-
-					zip.putNextEntry(e);
-
-					try (FileInputStream fin = new FileInputStream(resolvedFile)) {
-						IOUtil.copy(fin, zip);
-					}
-
-					zip.closeEntry();
-
+					zip.file(path, resolvedFile);
 				}
 
 			}
@@ -492,6 +457,8 @@ public class GeneratePluginMojo extends AbstractExtensionsMojo {
 				}
 			}
 		}
+		getLog().info(zip.getStatistics().toString());
+		return digestOut.getDigests();
 	}
 
 	private String getOutName(Artifact art) {
@@ -511,33 +478,14 @@ public class GeneratePluginMojo extends AbstractExtensionsMojo {
 		return maps.isEmpty() ? null : maps;
 	}
 
-	public FileLock getLock(FileChannel channel) throws IOException {
-		while (true) {
-			try {
-				return channel.tryLock();
-			} catch (OverlappingFileLockException ofl) {
-				try {
-					Thread.sleep(100);
-				} catch (InterruptedException e) {
-					throw new IOException("Interrupted.", e);
-				}
-			}
-		}
-	}
-
-	private void legacyZipAndRecurse(File file, File parent, ZipOutputStream zip) throws FileNotFoundException, IOException {
+	private void legacyZipAndRecurse(File file, File parent, ArchiveWriter zip) throws FileNotFoundException, IOException {
 
 		if (file.isDirectory()) {
 			for (File child : file.listFiles()) {
 				legacyZipAndRecurse(child, parent, zip);
 			}
 		} else {
-			zip.putNextEntry(new ZipEntry(
-					project.getArtifactId() + file.getAbsolutePath().replace(parent.getAbsolutePath(), "")));
-			try (FileInputStream fin = new FileInputStream(file)) {
-				IOUtil.copy(fin, zip);
-			}
-			zip.closeEntry();
+			zip.file(project.getArtifactId() + file.getAbsolutePath().replace(parent.getAbsolutePath(), ""), file);
 		}
 	}
 
@@ -7,8 +7,6 @@ import java.nio.file.Path;
 import java.nio.file.StandardCopyOption;
 import java.util.ArrayList;
 import java.util.List;
-import java.util.zip.ZipInputStream;
-import java.util.zip.ZipOutputStream;
 
 import org.apache.maven.artifact.Artifact;
 import org.apache.maven.plugin.MojoExecutionException;
@@ -150,21 +148,13 @@ public class GetArtifactsMojo extends AbstractExtensionsMojo {
 			if (processExtensionVersions && "extension-archive".equals(artifact.getClassifier())
 					&& "zip".equals(artifact.getType())) {
 				getLog().debug("Process versions in extension artifact " + artifact.getArtifactId() + " to " + target + " from " + artifact.getFile());
-				runIfNeedVersionProcessedArchive(artifact, target, () -> {
-					try(var in = new ZipInputStream(Files.newInputStream(extensionZip)); 
-						var out = new ZipOutputStream(Files.newOutputStream(target))) {
-						processVersionsInExtensionArchives(artifact, in, out);
-					}
-				}, Files.getLastModifiedTime(extensionZip));
+				runIfNeedVersionProcessedArchive(artifact, extensionZip, target,
+						() -> processVersionsInExtensionArchives(artifact, extensionZip, target));
 			} else if (processExtensionVersions && "jar".equals(artifact.getType())) {
 				if(isPotentialExtensions(artifact.getGroupId() + "-")) {
 					getLog().debug("Process versions in jar artifact " + artifact.getArtifactId() + " to " + target);
-					runIfNeedVersionProcessedArchive(artifact, target, () -> {
-						try(var in = new ZipInputStream(Files.newInputStream(extensionZip)); 
-							var out = new ZipOutputStream(Files.newOutputStream(target))) {
-							processVersionsInJarFile(artifact, new AtomicInteger(), in, out);
-						}
-					}, Files.getLastModifiedTime(extensionZip));
+					runIfNeedVersionProcessedArchive(artifact, extensionZip, target,
+							() -> processVersionsInJarFile(artifact, new AtomicInteger(), extensionZip, target));
 				}
 				else {
 					getLog().debug("Copying jar artifact " + artifact.getArtifactId() + " to " + target);
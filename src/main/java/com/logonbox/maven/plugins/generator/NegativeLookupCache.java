@@ -0,0 +1,139 @@
+package com.logonbox.maven.plugins.generator;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.maven.artifact.ArtifactUtils;
+import org.apache.maven.plugin.logging.Log;
+
+/**
+ * Remembers artifacts that have no extension archive, so that they are not
+ * looked up in remote repositories again on every build. Each is recorded as a
+ * zero length marker file in the local repository, next to where the extension
+ * archive would be, i.e. keyed by group, artifact and version.
+ * <p>
+ * Released artifacts never change, so once one is known not to have an
+ * extension archive that is remembered forever. Markers for snapshots expire
+ * after a time to live, as an extension archive may be deployed later.
+ * <p>
+ * Nothing is recorded when Maven is offline, as an artifact that could not be
+ * resolved then may well have an extension archive in a remote repository.
+ */
+public class NegativeLookupCache {
+
+	private static final String EXT = ".missing";
+
+	private final Path repository;
+	private final long snapshotTtl;
+	private final boolean offline;
+	private final Log log;
+	private final AtomicInteger skipped = new AtomicInteger();
+	private final AtomicInteger recorded = new AtomicInteger();
+
+	/**
+	 * Constructor.
+	 *
+	 * @param localRepository base directory of the local repository
+	 * @param snapshotTtl     time to live of markers for snapshots in milliseconds
+	 * @param offline         Maven is offline, so nothing should be recorded
+	 * @param log             log
+	 */
+	public NegativeLookupCache(File localRepository, long snapshotTtl, boolean offline, Log log) {
+		this.repository = localRepository.toPath();
+		this.snapshotTtl = snapshotTtl;
+		this.offline = offline;
+		this.log = log;
+	}
+
+	/**
+	 * Get whether an artifact is known not to have an extension archive.
+	 *
+	 * @param groupId    group ID
+	 * @param artifactId artifact ID
+	 * @param version    version
+	 * @return known to be missing
+	 */
+	public boolean isMissing(String groupId, String artifactId, String version) {
+		Path marker = marker(groupId, artifactId, version);
+		try {
+			FileTime time = Files.getLastModifiedTime(marker);
+			if (ArtifactUtils.isSnapshot(version) && System.currentTimeMillis() - time.toMillis() > snapshotTtl) {
+				return false;
+			}
+			skipped.incrementAndGet();
+			log.debug(String.format("%s:%s:%s is known not to have an extension archive.", groupId, artifactId,
+					version));
+			return true;
+		} catch (IOException ioe) {
+			return false;
+		}
+	}
+
+	/**
+	 * Record that an artifact does not have an extension archive. Failure to do
+	 * so is logged, but otherwise ignored. Nothing is recorded when offline.
+	 *
+	 * @param groupId    group ID
+	 * @param artifactId artifact ID
+	 * @param version    version
+	 */
+	public void setMissing(String groupId, String artifactId, String version) {
+		if (offline) {
+			log.debug(String.format("Offline, so not recording that %s:%s:%s has no extension archive.", groupId,
+					artifactId, version));
+			return;
+		}
+		Path marker = marker(groupId, artifactId, version);
+		try {
+			Files.createDirectories(marker.getParent());
+			if (Files.exists(marker))
+				Files.setLastModifiedTime(marker, FileTime.fromMillis(System.currentTimeMillis()));
+			else
+				Files.createFile(marker);
+			recorded.incrementAndGet();
+		} catch (IOException ioe) {
+			log.debug(String.format("Failed to record that %s:%s:%s has no extension archive.", groupId, artifactId,
+					version), ioe);
+		}
+	}
+
+	/**
+	 * Get whether a resolution failure was because an artifact's extension archive
+	 * does not exist, rather than any other reason (such as a network failure, or
+	 * the repository not being available offline), that should not be remembered.
+	 *
+	 * @param exception  exception
+	 * @param groupId    group ID
+	 * @param artifactId artifact ID
+	 * @return not found
+	 */
+	public static boolean isNotFound(Throwable exception, String groupId, String artifactId) {
+		String coords = groupId + ":" + artifactId + ":zip:" + AbstractExtensionsMojo.EXTENSION_ARCHIVE + ":";
+		boolean notFound = false;
+		for (Throwable t = exception; t != null; t = t.getCause() == t ? null : t.getCause()) {
+			/* Resolver exceptions are in different packages in different Maven versions */
+			String name = t.getClass().getSimpleName();
+			if (name.equals("RepositoryOfflineException"))
+				return false;
+			if (name.equals("ArtifactNotFoundException") && t.getMessage() != null && t.getMessage().contains(coords))
+				notFound = true;
+		}
+		return notFound;
+	}
+
+	@Override
+	public String toString() {
+		return String.format("Extension archive lookups: %d skipped as known to be missing, %d newly recorded as missing.",
+				skipped.get(), recorded.get());
+	}
+
+	private Path marker(String groupId, String artifactId, String version) {
+		return repository.resolve(groupId.replace('.', '/')).resolve(artifactId)
+				.resolve(ArtifactUtils.toSnapshotVersion(version))
+				.resolve(artifactId + "-" + version + "-" + AbstractExtensionsMojo.EXTENSION_ARCHIVE + ".zip" + EXT);
+	}
+}
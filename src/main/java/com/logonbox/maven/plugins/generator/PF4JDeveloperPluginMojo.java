@@ -1,19 +1,37 @@
 package com.logonbox.maven.plugins.generator;
 
+import java.io.Closeable;
 import java.io.File;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.OutputStream;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.FileVisitResult;
+import java.nio.file.FileSystems;
 import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.nio.file.attribute.BasicFileAttributes;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Properties;
 import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
 
 import org.apache.maven.artifact.Artifact;
 import org.apache.maven.plugins.annotations.LifecyclePhase;
 import org.apache.maven.plugins.annotations.Mojo;
+import org.apache.maven.plugins.annotations.Parameter;
 import org.apache.maven.plugins.annotations.ResolutionScope;
 import org.codehaus.plexus.util.FileUtils;
 import org.sonatype.inject.Description;
@@ -22,11 +40,31 @@ import org.sonatype.inject.Description;
 @Description("Generates the dependencies for PF4J Developer mode plugin generation")
 public class PF4JDeveloperPluginMojo extends AbstractPF4JPluginMojo {
 
+	/**
+	 * Stay resident after generating the developer plugin, and generate it again
+	 * whenever the project's classes, <code>plugin.properties</code>,
+	 * <code>extension.def</code> or any of the dependency jars change. If
+	 * <code>plugin.id</code> changes, the plugin generated for the old ID is
+	 * removed. Stop with Ctrl+C.
+	 */
+	@Parameter(defaultValue = "false", property = "plugin-generator.watch")
+	private boolean watch;
+
 	@Override
 	protected void doPF4JPlugin(Map<String, File> artifactMap, Map<String, String> versionMap,
 			Map<String, String> coreVersionMap, Properties properties, Map<String, List<String>> appendFolderMap)
 			throws IOException {
+		Map<String, File> libFiles = getLibFiles(artifactMap, versionMap, coreVersionMap, appendFolderMap);
+		materialize(properties, libFiles);
+		if (watch) {
+			try (Watcher watcher = new Watcher(properties, libFiles)) {
+				getLog().info("Watching for changes to the developer plugin, press Ctrl+C to stop.");
+				watcher.run();
+			}
+		}
+	}
 
+	private void materialize(Properties properties, Map<String, File> libFiles) throws IOException {
 		File projectTargetDir = new File(project.getBasedir(), "target");
 		File pluginsDir = new File(new File(projectTargetDir, properties.getProperty("plugin.id")), "plugins");
 		if(!pluginsDir.exists() && !pluginsDir.mkdirs()) {
@@ -41,22 +79,34 @@ public class PF4JDeveloperPluginMojo extends AbstractPF4JPluginMojo {
 		File libTarget = new File(targetDir, "lib");
 		File pluginPropertiesTarget = new File(pluginsDir, "plugin.properties");
 		
-		try {
-			File linkTarget = new File(project.getBuild().getOutputDirectory());
-			getLog().info("Linking " + classesTarget + " to " + linkTarget);
-			Files.createSymbolicLink(classesTarget.toPath(), linkTarget.toPath());
-		}
-		catch(UnsupportedOperationException uoe) {
-			getLog().warn("Falling back to copying classes, hot code replace may not work with this plugin.");
-			FileUtils.copyDirectory(projectTargetDir, classesTarget);
+		File linkTarget = new File(project.getBuild().getOutputDirectory());
+		Path classesPath = classesTarget.toPath();
+		if (Files.isSymbolicLink(classesPath) && Files.readSymbolicLink(classesPath).equals(linkTarget.toPath())) {
+			getLog().info(classesTarget + " is already linked to " + linkTarget);
+		} else {
+			try {
+				getLog().info("Linking " + classesTarget + " to " + linkTarget);
+				if (Files.isSymbolicLink(classesPath))
+					Files.delete(classesPath);
+				Files.createSymbolicLink(classesPath, linkTarget.toPath());
+			}
+			catch(UnsupportedOperationException | FileAlreadyExistsException e) {
+				getLog().warn("Falling back to copying classes, hot code replace may not work with this plugin.");
+				FileUtils.copyDirectoryStructure(linkTarget, classesTarget);
+			}
 		}
-			
 
 		getLog().info("Saving developer plugin properties to " + pluginPropertiesTarget);
 		try (OutputStream out = new FileOutputStream(pluginPropertiesTarget)) {
 			properties.store(out, "LogonBox PF4J Plugin");
 		}
 
+		syncLib(libTarget, libFiles);
+	}
+
+	private Map<String, File> getLibFiles(Map<String, File> artifactMap, Map<String, String> versionMap,
+			Map<String, String> coreVersionMap, Map<String, List<String>> appendFolderMap) {
+		Map<String, File> libFiles = new LinkedHashMap<>();
 		Set<String> addedPaths = new HashSet<String>();
 		for (Artifact a : project.getArtifacts()) {
 
@@ -115,7 +165,7 @@ public class PF4JDeveloperPluginMojo extends AbstractPF4JPluginMojo {
 					}
 
 					addedPaths.add(path);
-					FileUtils.copyFile(resolvedFile, new File(libTarget, resolvedFile.getName()));
+					libFiles.put(resolvedFile.getName(), resolvedFile);
 				}
 
 			} else {
@@ -126,10 +176,251 @@ public class PF4JDeveloperPluginMojo extends AbstractPF4JPluginMojo {
 					continue;
 				}
 				addedPaths.add(path);
-				FileUtils.copyFile(resolvedFile, new File(libTarget, resolvedFile.getName()));
+				libFiles.put(resolvedFile.getName(), resolvedFile);
 			}
 
 		}
+
+		return libFiles;
 	}
 
-}
\ No newline at end of file
+	/**
+	 * Make the <code>lib</code> directory contain exactly the given files. Files
+	 * already there with the same size and modification time as their source are
+	 * left alone, others are published again (see {@link #publishStrategy}), and
+	 * any files that are no longer wanted are deleted. If a clone is not
+	 * possible, files are copied rather than hard linked, so the lib directory
+	 * never shares files with the local repository unless <code>LINK</code> is
+	 * asked for.
+	 *
+	 * @param libTarget <code>lib</code> directory
+	 * @param libFiles  source files keyed by their name in the directory
+	 * @throws IOException on error
+	 */
+	private void syncLib(File libTarget, Map<String, File> libFiles) throws IOException {
+		Path lib = libTarget.toPath();
+		Files.createDirectories(lib);
+		int added = 0;
+		int updated = 0;
+		int removed = 0;
+		int unchanged = 0;
+		int linked = 0;
+		for (Map.Entry<String, File> en : libFiles.entrySet()) {
+			Path source = en.getValue().toPath();
+			Path target = lib.resolve(en.getKey());
+			if (Files.exists(target)) {
+				if (isSame(source, target)) {
+					unchanged++;
+					continue;
+				}
+				getLog().info("Updating " + en.getKey() + " in developer plugin lib");
+				updated++;
+			} else {
+				getLog().info("Adding " + en.getKey() + " to developer plugin lib");
+				added++;
+			}
+			FileLinks.Strategy published = FileLinks.publish(source, target, publishStrategy, false);
+			getLog().debug("Published " + source + " to " + target + " (" + published + ")");
+			if (published == FileLinks.Strategy.LINK)
+				linked++;
+		}
+		if (linked > 0)
+			getLog().info(String.format(
+					"Hard linked %d jars into %s, they share files with the local repository and must not be changed in place.",
+					linked, lib));
+		try (DirectoryStream<Path> dir = Files.newDirectoryStream(lib)) {
+			for (Path path : dir) {
+				if (Files.isRegularFile(path) && !libFiles.containsKey(path.getFileName().toString())) {
+					getLog().info("Removing " + path.getFileName() + " from developer plugin lib");
+					Files.delete(path);
+					removed++;
+				}
+			}
+		}
+		getLog().info(String.format("Synchronized %s: %d added, %d updated, %d removed, %d unchanged.", lib, added,
+				updated, removed, unchanged));
+	}
+
+	private static boolean isSame(Path source, Path target) throws IOException {
+		BasicFileAttributes sourceAttrs = Files.readAttributes(source, BasicFileAttributes.class);
+		BasicFileAttributes targetAttrs = Files.readAttributes(target, BasicFileAttributes.class);
+		return sourceAttrs.size() == targetAttrs.size()
+				&& sourceAttrs.lastModifiedTime().toMillis() == targetAttrs.lastModifiedTime().toMillis();
+	}
+
+	/**
+	 * Watches everything the developer plugin is generated from, and generates it
+	 * again when any of it changes.
+	 */
+	class Watcher implements Runnable, Closeable {
+		private static final long QUIET_PERIOD = 200;
+
+		private final WatchService watchService;
+		private final Map<String, File> libFiles;
+		private final Path classesPath;
+		private final Set<Path> propertiesFiles = new HashSet<>();
+		private final Set<Path> sources = new HashSet<>();
+		private Properties properties;
+
+		Watcher(Properties properties, Map<String, File> libFiles) throws IOException {
+			this.properties = properties;
+			this.libFiles = libFiles;
+			Path basedir = project.getBasedir().toPath().toAbsolutePath().normalize();
+			Path resources = basedir.resolve("src").resolve("main").resolve("resources");
+			classesPath = new File(project.getBuild().getOutputDirectory()).toPath().toAbsolutePath().normalize();
+			propertiesFiles.add(basedir.resolve("plugin.properties"));
+			propertiesFiles.add(resources.resolve("extension.def"));
+			for (File file : libFiles.values())
+				sources.add(file.toPath().toAbsolutePath().normalize());
+
+			watchService = FileSystems.getDefault().newWatchService();
+			try {
+				register(basedir);
+				if (Files.isDirectory(resources))
+					register(resources);
+				if (Files.isDirectory(classesPath))
+					registerAll(classesPath);
+				Set<Path> dirs = new HashSet<>();
+				for (Path source : sources) {
+					if (dirs.add(source.getParent()))
+						register(source.getParent());
+				}
+			} catch (IOException | RuntimeException e) {
+				watchService.close();
+				throw e;
+			}
+		}
+
+		@Override
+		public void run() {
+			try {
+				while (true) {
+					WatchKey key = watchService.take();
+					Set<Path> changed = new LinkedHashSet<>();
+					do {
+						collect(key, changed);
+						/* Compilers and builds write many files, wait until they have finished */
+					} while ((key = watchService.poll(QUIET_PERIOD, TimeUnit.MILLISECONDS)) != null);
+					regenerate(changed);
+				}
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			} catch (ClosedWatchServiceException e) {
+				/* Stopped */
+			}
+		}
+
+		@Override
+		public void close() throws IOException {
+			watchService.close();
+		}
+
+		private void collect(WatchKey key, Set<Path> changed) {
+			Path dir = (Path) key.watchable();
+			for (WatchEvent<?> event : key.pollEvents()) {
+				if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+					changed.addAll(propertiesFiles);
+					changed.add(classesPath);
+					continue;
+				}
+				Path path = dir.resolve((Path) event.context());
+				if (event.kind() == StandardWatchEventKinds.ENTRY_CREATE && Files.isDirectory(path)
+						&& path.startsWith(classesPath)) {
+					try {
+						registerAll(path);
+					} catch (IOException ioe) {
+						getLog().debug("Failed to watch " + path, ioe);
+					}
+				}
+				changed.add(path);
+			}
+			key.reset();
+		}
+
+		private void regenerate(Set<Path> changed) {
+			boolean propertiesChanged = false;
+			boolean relevant = false;
+			for (Path path : changed) {
+				if (propertiesFiles.contains(path)) {
+					propertiesChanged = true;
+					relevant = true;
+				} else if (path.startsWith(classesPath) || sources.contains(path)) {
+					relevant = true;
+				}
+			}
+			if (!relevant)
+				return;
+
+			long started = System.currentTimeMillis();
+			try {
+				if (propertiesChanged) {
+					String oldId = properties.getProperty("plugin.id");
+					properties = loadProperties(project.getBasedir());
+					String newId = properties.getProperty("plugin.id");
+					if (oldId != null && !oldId.equals(newId))
+						removePlugin(oldId);
+				}
+				materialize(properties, libFiles);
+				getLog().info(String.format("Developer plugin regenerated in %d ms.",
+						System.currentTimeMillis() - started));
+			} catch (IOException | RuntimeException e) {
+				/* Probably still being written, there will be another event */
+				getLog().warn("Failed to regenerate developer plugin. " + e.getMessage());
+				getLog().debug(e);
+			}
+		}
+
+		/**
+		 * Remove the developer plugin generated for a previous
+		 * <code>plugin.id</code>, so it is not loaded alongside the new one. Links
+		 * are removed without following them, so the project's classes are left
+		 * alone.
+		 *
+		 * @param oldId previous plugin ID
+		 * @throws IOException on error
+		 */
+		private void removePlugin(String oldId) throws IOException {
+			Path oldDir = new File(new File(project.getBasedir(), "target"), oldId).toPath();
+			Path pluginsDir = oldDir.resolve("plugins");
+			if (!Files.isRegularFile(pluginsDir.resolve("plugin.properties"))) {
+				getLog().warn("Plugin ID changed from " + oldId + ", but " + pluginsDir
+						+ " does not look like a developer plugin, so it has not been removed.");
+				return;
+			}
+			getLog().info("Plugin ID changed from " + oldId + ", removing " + pluginsDir);
+			Files.walkFileTree(pluginsDir, new SimpleFileVisitor<Path>() {
+				@Override
+				public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
+					Files.delete(file);
+					return FileVisitResult.CONTINUE;
+				}
+
+				@Override
+				public FileVisitResult postVisitDirectory(Path dir, IOException exc) throws IOException {
+					if (exc != null)
+						throw exc;
+					Files.delete(dir);
+					return FileVisitResult.CONTINUE;
+				}
+			});
+			try (DirectoryStream<Path> dir = Files.newDirectoryStream(oldDir)) {
+				if (!dir.iterator().hasNext())
+					Files.delete(oldDir);
+			}
+		}
+
+		private void register(Path dir) throws IOException {
+			dir.register(watchService, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY,
+					StandardWatchEventKinds.ENTRY_DELETE);
+		}
+
+		private void registerAll(Path dir) throws IOException {
+			try (Stream<Path> paths = Files.walk(dir)) {
+				for (Path path : (Iterable<Path>) paths::iterator) {
+					if (Files.isDirectory(path))
+						register(path);
+				}
+			}
+		}
+	}
+}
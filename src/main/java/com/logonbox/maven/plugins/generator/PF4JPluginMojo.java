@@ -1,20 +1,18 @@
 package com.logonbox.maven.plugins.generator;
 
+import java.io.BufferedOutputStream;
 import java.io.File;
-import java.io.FileInputStream;
 import java.io.FileNotFoundException;
 import java.io.FileOutputStream;
 import java.io.IOException;
+import java.nio.file.Files;
 import java.util.ArrayList;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Properties;
 import java.util.Set;
-import java.util.zip.ZipEntry;
-import java.util.zip.ZipOutputStream;
 
-import org.apache.commons.codec.digest.DigestUtils;
 import org.apache.maven.artifact.Artifact;
 import org.apache.maven.plugins.annotations.Component;
 import org.apache.maven.plugins.annotations.LifecyclePhase;
@@ -22,8 +20,6 @@ import org.apache.maven.plugins.annotations.Mojo;
 import org.apache.maven.plugins.annotations.Parameter;
 import org.apache.maven.plugins.annotations.ResolutionScope;
 import org.apache.maven.project.MavenProjectHelper;
-import org.codehaus.plexus.util.FileUtils;
-import org.codehaus.plexus.util.IOUtil;
 import org.sonatype.inject.Description;
 
 @Mojo(threadSafe = true, name = "generate-pf4j-plugin", requiresProject = true, defaultPhase = LifecyclePhase.COMPILE, requiresDependencyResolution = ResolutionScope.RUNTIME, requiresDependencyCollection = ResolutionScope.RUNTIME)
@@ -63,23 +59,31 @@ public class PF4JPluginMojo extends AbstractPF4JPluginMojo {
 		getLog().info("Adding " + project.getArtifacts().size() + " primary artifacts ");
 		artifacts.addAll(project.getArtifacts());
 
-		generatePF4JZip(versionMap, artifactMap, coreVersionMap, properties, zipfile, artifacts, appendFolderMap,
-				extensionDef);
-
-		// Generate an MD5 hash
 		File md5File = new File(extensionDef, project.getArtifactId() + "-" + project.getVersion() + ".md5");
+		File checksumsFile = new File(extensionDef,
+				project.getArtifactId() + "-" + project.getVersion() + ".checksums.json");
+
+		BuildFingerprint fingerprint = new BuildFingerprint(zipfile);
+		fingerprint.add("compression", getCompressionPolicy());
+		fingerprint.add("checksums", getChecksumAlgorithms());
+		fingerprint.add("plugin.properties", properties);
+		fingerprint.file("classes", new File(project.getBuild().getOutputDirectory()));
+		fingerprintArtifacts(fingerprint, artifacts, versionMap, artifactMap, coreVersionMap, appendFolderMap);
+
+		if (incremental && fingerprint.isCurrent(zipfile, md5File, checksumsFile, storeTarget)) {
+			getLog().info("Archive " + zipfile + " is up to date, nothing has changed since it was built.");
+		} else {
+			fingerprint.invalidate();
 
-		try (FileInputStream zin = new FileInputStream(zipfile)) {
-			FileUtils.fileWrite(md5File.getAbsolutePath(), DigestUtils.md5Hex(zin));
-		}
-
-		try (FileInputStream zin = new FileInputStream(md5File)) {
-			getLog().info("MD5 sum value is " + IOUtil.toString(zin));
-		}
+			Map<String, String> digests = generatePF4JZip(versionMap, artifactMap, coreVersionMap, properties, zipfile,
+					artifacts, appendFolderMap, extensionDef);
+			writeChecksums(zipfile, digests, md5File, checksumsFile);
 
-		getLog().info("Copying archive to local store " + storeTarget.getAbsolutePath());
+			FileLinks.Strategy published = FileLinks.publish(zipfile.toPath(), storeTarget.toPath(), publishStrategy);
+			getLog().info("Published archive to local store " + storeTarget.getAbsolutePath() + " (" + published + ")");
 
-		FileUtils.copyFile(zipfile, storeTarget);
+			fingerprint.save();
+		}
 
 		if (attach) {
 			getLog().info("Attaching artifact as extension-archive zip");
@@ -88,17 +92,19 @@ public class PF4JPluginMojo extends AbstractPF4JPluginMojo {
 
 	}
 
-	protected void generatePF4JZip(Map<String, String> versionMap, Map<String, File> artifactMap,
+	protected Map<String, String> generatePF4JZip(Map<String, String> versionMap, Map<String, File> artifactMap,
 			Map<String, String> coreVersionMap, Properties properties, File zipfile, List<Artifact> artifacts,
 			Map<String, List<String>> appendFolderMap, File extensionDef) throws IOException, FileNotFoundException {
 
-		try (ZipOutputStream zip = new ZipOutputStream(new FileOutputStream(zipfile))) {
+		/* A new file, as the old one may be linked to the local store */
+		Files.deleteIfExists(zipfile.toPath());
+		/* Digest below the buffer, so the digests are updated a block at a time */
+		DigestingOutputStream digestOut = new DigestingOutputStream(new FileOutputStream(zipfile),
+				getChecksumAlgorithms());
+		ArchiveWriter zip = new ArchiveWriter(new BufferedOutputStream(digestOut, 65536), getCompressionPolicy());
+		try (zip) {
 
-			ZipEntry e = new ZipEntry("plugin.properties");
-			zip.putNextEntry(e);
-			;
-			properties.store(zip, "LogonBox PF4J Plugin");
-			zip.closeEntry();
+			zip.content("plugin.properties", out -> properties.store(out, "LogonBox PF4J Plugin"));
 
 			getLog().info("Adding PF4J project artifact " + project.getBuild().getOutputDirectory());
 			File projectBuildDir = new File(project.getBuild().getOutputDirectory());
@@ -176,15 +182,7 @@ public class PF4JPluginMojo extends AbstractPF4JPluginMojo {
 
 						addedPaths.add(path);
 
-						e = new ZipEntry(path);
-
-						zip.putNextEntry(e);
-
-						try (FileInputStream fin = new FileInputStream(resolvedFile)) {
-							IOUtil.copy(fin, zip);
-						}
-
-						zip.closeEntry();
+						zip.file(path, resolvedFile);
 					}
 
 				} else {
@@ -200,34 +198,23 @@ public class PF4JPluginMojo extends AbstractPF4JPluginMojo {
 
 					addedPaths.add(path);
 
-					e = new ZipEntry(path);
-
-					zip.putNextEntry(e);
-
-					try (FileInputStream fin = new FileInputStream(resolvedFile)) {
-						IOUtil.copy(fin, zip);
-					}
-
-					zip.closeEntry();
-
+					zip.file(path, resolvedFile);
 				}
 
 			}
 		}
+		getLog().info(zip.getStatistics().toString());
+		return digestOut.getDigests();
 	}
 
-	private void zipAndRecurse(File file, File parent, ZipOutputStream zip) throws FileNotFoundException, IOException {
+	private void zipAndRecurse(File file, File parent, ArchiveWriter zip) throws FileNotFoundException, IOException {
 
 		if (file.isDirectory()) {
 			for (File child : file.listFiles()) {
 				zipAndRecurse(child, parent, zip);
 			}
 		} else {
-			zip.putNextEntry(new ZipEntry(file.getAbsolutePath().replace(parent.getAbsolutePath(), "")));
-			try (FileInputStream fin = new FileInputStream(file)) {
-				IOUtil.copy(fin, zip);
-			}
-			zip.closeEntry();
+			zip.file(file.getAbsolutePath().replace(parent.getAbsolutePath(), ""), file);
 		}
 	}
 }
\ No newline at end of file
@@ -7,14 +7,14 @@ import java.nio.file.Path;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.Properties;
-import java.util.jar.Manifest;
-import java.util.zip.ZipEntry;
-import java.util.zip.ZipInputStream;
-
-import javax.xml.parsers.DocumentBuilderFactory;
 
 import org.w3c.dom.Document;
 
+/**
+ * Helpers to get information about plugin and extension archives. These all
+ * use {@link ArchiveMetadata}, which should be used directly when more than one
+ * piece of information is needed from the same archive.
+ */
 public class Plugins {
 
 	public static final String X_PLUGIN_NAME = "x.plugin.name";
@@ -31,13 +31,15 @@ public class Plugins {
 	public static Properties getPluginProperties(Path path) {
 		if (Files.isDirectory(path)) {
 			try (var in = Files.newInputStream(path.resolve("plugin.properties"))) {
-				return properties(in);
+				var p = new Properties();
+				p.load(in);
+				return p;
 			} catch (IOException ioe) {
 				throw new IllegalArgumentException(String.format("Could not open %s as a zip file.", path));
 			}
 		} else {
-			try (var in = Files.newInputStream(path)) {
-				return getPluginProperties(in);
+			try (var md = ArchiveMetadata.of(path)) {
+				return md.getPluginProperties().orElseThrow(() -> new IllegalArgumentException("Not a plugin stream."));
 			} catch (IOException ioe) {
 				throw new IllegalArgumentException(String.format("Could not open %s as a zip file.", path));
 			}
@@ -45,37 +47,32 @@ public class Plugins {
 	}
 
 	public static Properties getPluginProperties(InputStream in) {
-		ZipEntry en;
-		try (var z = new ZipInputStream(in)) {
-			while ((en = z.getNextEntry()) != null) {
-				if (en.getName().equals("plugin.properties")) {
-					return properties(z);
-				}
-			}
-		} catch (IOException ioe) {
+		try (in) {
+			return ArchiveMetadata.scan(in, false).getPluginProperties().orElseThrow();
+		} catch (IOException | RuntimeException e) {
+			throw new IllegalArgumentException("Not a plugin stream.");
 		}
-		throw new IllegalArgumentException("Not a plugin stream.");
 	}
 
 	public static Properties getExtensionProperties(Path path) {
-		try (var in = Files.newInputStream(path)) {
-			return getExtensionProperties(in);
+		try (var md = ArchiveMetadata.of(path)) {
+			return md.getExtensionProperties().orElseThrow(() -> new IllegalArgumentException("Not an extension stream."));
 		} catch (IOException ioe) {
 			throw new IllegalArgumentException(String.format("Could not open %s as a zip file.", path));
 		}
 	}
 
 	public static String getExtensionVersion(Path path) {
-		try (var in = Files.newInputStream(path)) {
-			return getExtensionVersion(in);
+		try (var md = ArchiveMetadata.of(path)) {
+			return md.getExtensionVersion().orElseThrow(() -> new IllegalArgumentException("Not an extension stream."));
 		} catch (IOException ioe) {
 			throw new IllegalArgumentException(String.format("Could not open %s as a zip file.", path));
 		}
 	}
 
 	public static Properties getDefaultMavenManifestProperties(Path path) {
-		try (var in = Files.newInputStream(path)) {
-			return getDefaultMavenManifestProperties(in);
+		try (var md = ArchiveMetadata.of(path)) {
+			return md.getMavenProperties().orElseThrow(() -> new IllegalArgumentException("Not an extension stream."));
 		} catch (IOException ioe) {
 			throw new IllegalArgumentException(String.format("Could not open %s as a zip file.", path));
 		}
@@ -92,98 +89,35 @@ public class Plugins {
 	}
 	
 	public static Properties getDefaultMavenManifestProperties(InputStream in) {
-		var doc = getMavenManifestInsideArchive(in);
-		var p = new Properties();
-		putIfNotNull(p, "artifactId", "artifactId", doc);
-		putIfNotNull(p, "name", "name", doc);
-		putIfNotNull(p, "description", "description", doc);
-		putIfNotNull(p, "version", "version", doc);
-		return p;
+		try (in) {
+			return ArchiveMetadata.scan(in, true).getMavenProperties().orElseThrow();
+		} catch (IOException | RuntimeException e) {
+			throw new IllegalArgumentException("Not an extension stream.");
+		}
 	}
 
 	public static Document getMavenManifestInsideArchive(InputStream in) {
-		return getMavenManifestInsideArchive(in, null);
-	}
-	
-	private static Document getMavenManifestInsideArchive(InputStream in, String extName) {
-		ZipEntry en;
-		boolean hasDef = false;
-		Document hasVersion = null;
-		try (var z = new ZipInputStream(in)) {
-			while ((en = z.getNextEntry()) != null) {
-				if(extName == null) {
-					extName = en.getName();
-					while(extName.startsWith("/"))
-						extName = extName.substring(1);
-					extName = extName.split("/")[0];
-				}
-				if (en.getName().equals("extension.def") || en.getName().endsWith("/extension.def")) {
-					hasDef = true;
-				} else if (en.getName().matches(".*META-INF/maven/.*/pom\\.xml")) {
-					try {
-			    		var docBuilderFactory = DocumentBuilderFactory.newInstance();
-			            var docBuilder = docBuilderFactory.newDocumentBuilder();
-			            hasVersion = docBuilder.parse (z);
-					}
-					catch(Exception e) {
-						e.printStackTrace();
-					}
-				} else if (extName != null && en.getName().matches(".*/" + extName + ".*\\.jar")) {
-					try {
-						return getMavenManifestInsideArchive(z, extName);
-					} catch (IllegalArgumentException iae) {
-					}
-				}
-			}
-		} catch (IOException ioe) {
-		}
-		if (hasDef && hasVersion != null) {
-			return hasVersion;
+		try (in) {
+			return ArchiveMetadata.scan(in, true).getMavenPom().orElseThrow();
+		} catch (IOException | RuntimeException e) {
+			throw new IllegalArgumentException("Not an extension stream.");
 		}
-		throw new IllegalArgumentException("Not an extension stream.");
 	}
 
 	public static String getExtensionVersion(InputStream in) {
-		ZipEntry en;
-		boolean hasDef = false;
-		String hasVersion = null;
-		try (var z = new ZipInputStream(in)) {
-			while ((en = z.getNextEntry()) != null) {
-				if (en.getName().equals("extension.def")) {
-					hasDef = true;
-				} else if (en.getName().equals("META-INF/MANIFEST.MF")) {
-					var mf = new Manifest(z);
-					hasVersion = mf.getMainAttributes().getValue("Implementation-Version");
-				} else if (en.getName().endsWith(".jar")) {
-					try {
-						return getExtensionVersion(z);
-					} catch (IllegalArgumentException iae) {
-					}
-				}
-			}
-		} catch (IOException ioe) {
+		try (in) {
+			return ArchiveMetadata.scan(in, true).getExtensionVersion().orElseThrow();
+		} catch (IOException | RuntimeException e) {
+			throw new IllegalArgumentException("Not an extension stream.");
 		}
-		if (hasDef && hasVersion != null)
-			return hasVersion;
-		throw new IllegalArgumentException("Not an extension stream.");
 	}
 
 	public static Properties getExtensionProperties(InputStream in) {
-		ZipEntry en;
-		try (var z = new ZipInputStream(in)) {
-			while ((en = z.getNextEntry()) != null) {
-				if (en.getName().equals("extension.def") || en.getName().endsWith("/extension.def")) {
-					return properties(z);
-				} else if (en.getName().endsWith(".jar")) {
-					try {
-						return getExtensionProperties(z);
-					} catch (IllegalArgumentException iae) {
-					}
-				}
-			}
-		} catch (IOException ioe) {
+		try (in) {
+			return ArchiveMetadata.scan(in, true).getExtensionProperties().orElseThrow();
+		} catch (IOException | RuntimeException e) {
+			throw new IllegalArgumentException("Not an extension stream.");
 		}
-		throw new IllegalArgumentException("Not an extension stream.");
 	}
 	
 	public static String getBestProperty(String defaultValue, Collection<Properties> properties, String... keys) {
@@ -195,25 +129,4 @@ public class Plugins {
 		}
 		return defaultValue;
 	}
-
-	private static Properties properties(InputStream in) throws IOException {
-		var p = new Properties();
-		p.load(in);
-		return p;
-	}
-	
-	private static void putIfNotNull(Properties p, String k, String n, Document doc) {
-		var v = findElString(doc, n);
-		if(v != null)
-			p.put(k, v);
-	}
-
-	private static String findElString(Document doc, String name) {
-		try {
-			return doc.getDocumentElement().getElementsByTagName(name).item(0).getTextContent();
-		}
-		catch(Exception e) {
-			return null;
-		}
-	}
 }
@@ -0,0 +1,177 @@
+package com.logonbox.maven.plugins.generator;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+import org.apache.commons.codec.binary.Hex;
+import org.apache.maven.artifact.Artifact;
+import org.apache.maven.plugin.logging.Log;
+
+/**
+ * An on-disk cache of version processed archives that survives between builds.
+ * Results are keyed by the SHA-256 of the source archive, along with the
+ * snapshot version suffix that was injected, so a changed source or a new build
+ * number will always result in a miss.
+ * <p>
+ * Cache hits are hard linked into place where possible. The total size of the
+ * cache is bounded, with the least recently used results evicted first. As the
+ * linked results share their modification time with the cached file, usage is
+ * recorded in a separate zero length <code>.used</code> file for each entry.
+ */
+public class ProcessedArchiveCache {
+
+	/**
+	 * Increment if the output of version processing changes, so results from
+	 * older versions of this plugin are not used.
+	 */
+	private static final int FORMAT = 1;
+
+	private static final String DATA_EXT = ".bin";
+	private static final String USED_EXT = ".used";
+
+	private final Path dir;
+	private final long maxSize;
+	private final Log log;
+
+	public ProcessedArchiveCache(Path dir, long maxSize, Log log) {
+		this.dir = dir;
+		this.maxSize = maxSize;
+		this.log = log;
+	}
+
+	/**
+	 * Calculate the cache key for processing a source archive.
+	 *
+	 * @param artifact artifact being processed
+	 * @param source   source archive
+	 * @param suffix   snapshot version suffix
+	 * @return key
+	 * @throws IOException on error
+	 */
+	public String key(Artifact artifact, Path source, String suffix) throws IOException {
+		MessageDigest digest;
+		try {
+			digest = MessageDigest.getInstance("SHA-256");
+		} catch (NoSuchAlgorithmException e) {
+			throw new IllegalStateException(e);
+		}
+		try (InputStream in = Files.newInputStream(source)) {
+			byte[] buf = new byte[65536];
+			int r;
+			while ((r = in.read(buf)) != -1)
+				digest.update(buf, 0, r);
+		}
+		String classifier = artifact.getClassifier() == null || artifact.getClassifier().equals("") ? "jar"
+				: artifact.getClassifier();
+		return Hex.encodeHexString(digest.digest()) + "-" + classifier + "-" + suffix.replaceAll("[^A-Za-z0-9._-]", "_")
+				+ "-" + FORMAT;
+	}
+
+	/**
+	 * Place a cached result at the target location if there is one.
+	 *
+	 * @param key    key
+	 * @param target target
+	 * @return <code>true</code> if the cache contained the result
+	 * @throws IOException on error
+	 */
+	public boolean restore(String key, Path target) throws IOException {
+		Path cached = dir.resolve(key + DATA_EXT);
+		if (!Files.exists(cached))
+			return false;
+		try {
+			boolean linked = FileLinks.linkOrCopy(cached, target);
+			touch(key);
+			log.debug(String.format("%s %s from processed archive cache.", linked ? "Linked" : "Copied", target));
+			return true;
+		} catch (NoSuchFileException nsfe) {
+			/* Evicted by another build */
+			return false;
+		}
+	}
+
+	/**
+	 * Add a newly processed archive to the cache, then evict the least recently
+	 * used entries if the cache has grown beyond its maximum size.
+	 *
+	 * @param key    key
+	 * @param result processed archive
+	 * @throws IOException on error
+	 */
+	public void store(String key, Path result) throws IOException {
+		Files.createDirectories(dir);
+		Path tmp = Files.createTempFile(dir, key, ".tmp");
+		try {
+			FileLinks.linkOrCopy(result, tmp);
+			Files.move(tmp, dir.resolve(key + DATA_EXT), StandardCopyOption.ATOMIC_MOVE,
+					StandardCopyOption.REPLACE_EXISTING);
+		} finally {
+			Files.deleteIfExists(tmp);
+		}
+		touch(key);
+		evict();
+	}
+
+	private void touch(String key) throws IOException {
+		Path used = dir.resolve(key + USED_EXT);
+		if (!Files.exists(used)) {
+			try {
+				Files.createFile(used);
+				return;
+			} catch (IOException ioe) {
+				/* Created by another build */
+			}
+		}
+		Files.setLastModifiedTime(used, FileTime.fromMillis(System.currentTimeMillis()));
+	}
+
+	private void evict() throws IOException {
+		class Cached {
+			Path data;
+			long size;
+			long used;
+		}
+		List<Cached> all = new ArrayList<>();
+		long total = 0;
+		try (DirectoryStream<Path> stream = Files.newDirectoryStream(dir, "*" + DATA_EXT)) {
+			for (Path p : stream) {
+				try {
+					Cached c = new Cached();
+					c.data = p;
+					c.size = Files.size(p);
+					String name = p.getFileName().toString();
+					Path used = dir.resolve(name.substring(0, name.length() - DATA_EXT.length()) + USED_EXT);
+					c.used = Files.exists(used) ? Files.getLastModifiedTime(used).toMillis() : 0;
+					total += c.size;
+					all.add(c);
+				} catch (NoSuchFileException nsfe) {
+					/* Evicted by another build */
+				}
+			}
+		}
+		if (total <= maxSize)
+			return;
+
+		all.sort(Comparator.comparingLong(c -> c.used));
+		for (Cached c : all) {
+			if (total <= maxSize)
+				break;
+			String name = c.data.getFileName().toString();
+			log.debug(String.format("Evicting %s from processed archive cache.", name));
+			Files.deleteIfExists(c.data);
+			Files.deleteIfExists(dir.resolve(name.substring(0, name.length() - DATA_EXT.length()) + USED_EXT));
+			total -= c.size;
+		}
+	}
+}
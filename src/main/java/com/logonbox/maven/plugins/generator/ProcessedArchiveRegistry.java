@@ -0,0 +1,101 @@
+package com.logonbox.maven.plugins.generator;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.maven.artifact.Artifact;
+import org.apache.maven.execution.MavenSession;
+
+import com.logonbox.maven.plugins.generator.AbstractExtensionsMojo.IORunnable;
+
+/**
+ * Keeps track of which artifacts have already been version processed in the
+ * current Maven session, so each is processed only once. If another project in
+ * a parallel build is processing the same artifact at the same time, the caller
+ * waits for it to finish rather than processing it again.
+ */
+public class ProcessedArchiveRegistry {
+
+	private final ConcurrentMap<String, CompletableFuture<Path>> processed = new ConcurrentHashMap<>();
+	private final AtomicInteger hits = new AtomicInteger();
+	private final AtomicInteger misses = new AtomicInteger();
+	private final AtomicInteger waits = new AtomicInteger();
+
+	/**
+	 * Get the registry for a session.
+	 *
+	 * @param session session
+	 * @return registry
+	 */
+	public static ProcessedArchiveRegistry get(MavenSession session) {
+		return SessionComponents.get(session, ProcessedArchiveRegistry.class, ProcessedArchiveRegistry::new);
+	}
+
+	/**
+	 * Process an artifact to the target, unless it has already been processed (or
+	 * is being processed) in this session.
+	 *
+	 * @param artifact  artifact
+	 * @param target    where the processed archive is written
+	 * @param processor processes the archive
+	 * @return <code>null</code> if processed by this call, or the path the
+	 *         artifact was previously processed to
+	 * @throws IOException on error
+	 */
+	public Path process(Artifact artifact, Path target, IORunnable processor) throws IOException {
+		CompletableFuture<Path> mine = new CompletableFuture<>();
+		CompletableFuture<Path> other = processed.putIfAbsent(artifact.getId(), mine);
+		if (other == null) {
+			misses.incrementAndGet();
+			try {
+				processor.run();
+				mine.complete(target);
+				return null;
+			} catch (IOException | RuntimeException e) {
+				/* Let the next caller try again */
+				processed.remove(artifact.getId(), mine);
+				mine.completeExceptionally(e);
+				throw e;
+			}
+		}
+
+		if (other.isDone())
+			hits.incrementAndGet();
+		else
+			waits.incrementAndGet();
+		try {
+			return other.join();
+		} catch (CompletionException ce) {
+			if (ce.getCause() instanceof RuntimeException)
+				throw (RuntimeException) ce.getCause();
+			throw new IOException(String.format("Processing of %s by another project failed.", artifact),
+					ce.getCause());
+		} catch (CancellationException ce) {
+			throw new IOException(String.format("Processing of %s was cancelled.", artifact), ce);
+		}
+	}
+
+	public int getHits() {
+		return hits.get();
+	}
+
+	public int getMisses() {
+		return misses.get();
+	}
+
+	public int getWaits() {
+		return waits.get();
+	}
+
+	@Override
+	public String toString() {
+		return String.format("Processed archives this session: %d processed, %d reused, %d waited for another project.",
+				misses.get(), hits.get(), waits.get());
+	}
+}
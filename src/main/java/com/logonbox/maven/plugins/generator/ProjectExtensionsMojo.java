@@ -2,11 +2,9 @@ package com.logonbox.maven.plugins.generator;
 
 import java.io.File;
 import java.io.IOException;
-import java.nio.file.Files;
 import java.nio.file.Path;
-import java.util.Set;
-import java.util.zip.ZipInputStream;
-import java.util.zip.ZipOutputStream;
+import java.util.ArrayList;
+import java.util.List;
 
 import org.apache.maven.artifact.Artifact;
 import org.apache.maven.plugin.MojoExecutionException;
@@ -15,9 +13,7 @@ import org.apache.maven.plugins.annotations.Mojo;
 import org.apache.maven.plugins.annotations.Parameter;
 import org.apache.maven.plugins.annotations.ResolutionScope;
 import org.apache.maven.project.MavenProject;
-import org.apache.maven.shared.transfer.artifact.resolve.ArtifactResolverException;
 import org.apache.maven.shared.transfer.artifact.resolve.ArtifactResult;
-import org.apache.maven.shared.transfer.dependencies.resolve.DependencyResolverException;
 
 /**
  * Resolves and downloads all of a projects extensions and place the resulting
@@ -49,23 +45,14 @@ public class ProjectExtensionsMojo extends AbstractExtensionsMojo {
 			return;
 		}
 
-		Set<Artifact> artifacts = project.getArtifacts();
-		for (Artifact artifact : artifacts) {
+		List<Artifact> extensions = new ArrayList<>();
+		for (Artifact artifact : project.getArtifacts()) {
 			if (isProcessedGroup(artifact) && isJarExtension(artifact)) {
 				getLog().info("Getting " + artifact);
-				coordinate.setGroupId(artifact.getGroupId());
-				coordinate.setArtifactId(artifact.getArtifactId());
-				coordinate.setVersion(artifact.getVersion());
-				coordinate.setType("zip");
-				coordinate.setClassifier(EXTENSION_ARCHIVE);
-
-				try {
-					doCoordinate();
-				} catch (MojoFailureException | DependencyResolverException | ArtifactResolverException e) {
-					getLog().debug("Failed to process an artifact, assuming it's not an extension.", e);
-				}
+				extensions.add(artifact);
 			}
 		}
+		resolveExtensionArchives(extensions);
 	}
 
 	protected void doHandleResult(ArtifactResult result) throws MojoExecutionException {
@@ -86,12 +73,8 @@ public class ProjectExtensionsMojo extends AbstractExtensionsMojo {
 					false);
 			Path target = checkDir(artifactPath).resolve(fileName);
 			getLog().debug("Process versions in artifact " + a.getArtifactId() + " from " + a.getFile() + " to " + target);
-			runIfNeedVersionProcessedArchive(a, target, () -> {
-				try(var in = new ZipInputStream(Files.newInputStream(extensionZip)); 
-					var out = new ZipOutputStream(Files.newOutputStream(target))) {
-					processVersionsInExtensionArchives(a, in, out);
-				}	
-			}, Files.getLastModifiedTime(extensionZip));
+			runIfNeedVersionProcessedArchive(a, extensionZip, target,
+					() -> processVersionsInExtensionArchives(a, extensionZip, target));
 			
 		} catch (IOException e) {
 			throw new MojoExecutionException("Failed to copy extension to staging area.", e);
@@ -18,17 +18,10 @@ package com.logonbox.maven.plugins.generator;
  */
 
 import java.io.File;
-import java.io.IOException;
-import java.io.ObjectOutputStream;
-import java.io.OutputStream;
-import java.io.RandomAccessFile;
-import java.nio.channels.Channels;
-import java.nio.channels.FileChannel;
-import java.nio.channels.FileLock;
-import java.nio.channels.OverlappingFileLockException;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.TimeUnit;
 
 import org.apache.maven.artifact.Artifact;
 import org.apache.maven.plugin.MojoExecutionException;
@@ -57,72 +50,49 @@ public class ResolveDependenciesMojo extends AbstractBaseExtensionsMojo {
 			return;
 		}
 		
-		File outputFile = new File(project.getBasedir(), "target" + File.separator + "dependencies.ser");
+		File outputFile = new File(project.getBasedir(), "target" + File.separator + DependencyMap.FILENAME);
 		outputFile.getParentFile().mkdirs();
 
-		try (@SuppressWarnings("resource")
-		FileChannel channel = new RandomAccessFile(outputFile, "rw").getChannel()) {
-			OutputStream out = Channels.newOutputStream(channel);
-			FileLock lock = getLock(channel);
-			try {
+		try {
 
-				Map<String, String> versionMap = new HashMap<String, String>();
-				Map<String, File> artifactMap = new HashMap<String, File>();
+			Map<String, String> versionMap = new HashMap<String, String>();
+			Map<String, File> artifactMap = new HashMap<String, File>();
 
-				getLog().info("Generating dependencies map to " + outputFile);
+			getLog().info("Generating dependencies map to " + outputFile);
 
-				Set<Artifact> artifacts = project.getArtifacts();
-				for (Artifact a : artifacts) {
+			Set<Artifact> artifacts = project.getArtifacts();
+			for (Artifact a : artifacts) {
 
-					String key = makeKey(a);
+				String key = makeKey(a);
 
-					if (a.getScope().equalsIgnoreCase("system")) {
-						getLog().info("Ignoring system scope artifact " + key);
-						continue;
-					}
+				if (a.getScope().equalsIgnoreCase("system")) {
+					getLog().info("Ignoring system scope artifact " + key);
+					continue;
+				}
 
-					getLog().debug("Dependency " + key + " version=" + a.getBaseVersion() + " scope=" + a.getScope()
-							+ " type=" + a.getType() + " url=" + a.getDownloadUrl() + " file="
-							+ a.getFile().getAbsolutePath());
+				getLog().debug("Dependency " + key + " version=" + a.getBaseVersion() + " scope=" + a.getScope()
+						+ " type=" + a.getType() + " url=" + a.getDownloadUrl() + " file="
+						+ a.getFile().getAbsolutePath());
 
-					versionMap.put(key, a.getBaseVersion());
-					artifactMap.put(key, a.getFile());
-				}
+				versionMap.put(key, a.getBaseVersion());
+				artifactMap.put(key, a.getFile());
+			}
 
-				getLog().info("Adding project " + project.getGroupId() + "/" + project.getArtifactId());
+			getLog().info("Adding project " + project.getGroupId() + "/" + project.getArtifactId());
 
-				versionMap.put(project.getGroupId() + "/" + project.getArtifactId(), project.getVersion());
-				artifactMap.put(project.getGroupId() + "/" + project.getArtifactId(), project.getFile());
+			versionMap.put(project.getGroupId() + "/" + project.getArtifactId(), project.getVersion());
+			artifactMap.put(project.getGroupId() + "/" + project.getArtifactId(), project.getFile());
 
-				ObjectOutputStream obj = new ObjectOutputStream(out);
-				obj.writeObject(versionMap);
-				obj.writeObject(artifactMap);
-				obj.flush();
+			long lockWait = DependencyMap.write(outputFile.toPath(), versionMap, artifactMap);
 
-				getLog().info("Created: " + outputFile);
-			} finally {
-				lock.release();
-			}
+			getLog().info("Created: " + outputFile);
+			getLog().info(String.format("Waited %d ms for dependency map lock.", TimeUnit.NANOSECONDS.toMillis(lockWait)));
 		} catch (Exception e) {
 			getLog().error(e);
 			throw new MojoExecutionException("Unable to create dependencies file: " + e, e);
 		}
 	}
 
-	public FileLock getLock(FileChannel channel) throws IOException {
-		while (true) {
-			try {
-				return channel.tryLock();
-			} catch (OverlappingFileLockException ofl) {
-				try {
-					Thread.sleep(100);
-				} catch (InterruptedException e) {
-					throw new IOException("Interrupted.", e);
-				}
-			}
-		}
-	}
-
 	public static String makeKey(Artifact a) {
 		if (a.getClassifier() == null || a.getClassifier().equals(""))
 			return a.getGroupId() + "/" + a.getArtifactId();
@@ -0,0 +1,40 @@
+package com.logonbox.maven.plugins.generator;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.function.Supplier;
+
+import org.apache.maven.execution.MavenSession;
+
+/**
+ * Holds objects that live for exactly one Maven session, and are shared by all
+ * mojo executions in that session. When building in parallel, each project is
+ * built with a clone of the session, but all clones share the same execution
+ * request, so that is what objects are associated with.
+ */
+public final class SessionComponents {
+
+	private static final Map<Object, Map<Class<?>, Object>> SESSIONS = new WeakHashMap<>();
+
+	private SessionComponents() {
+	}
+
+	/**
+	 * Get the instance of a component for a session, creating it if this is the
+	 * first time it has been requested.
+	 *
+	 * @param <T>      type of component
+	 * @param session  session
+	 * @param type     type of component
+	 * @param supplier creates the component
+	 * @return component
+	 */
+	public static <T> T get(MavenSession session, Class<T> type, Supplier<T> supplier) {
+		synchronized (SESSIONS) {
+			Map<Class<?>, Object> components = SESSIONS.computeIfAbsent(session.getRequest(),
+					k -> new HashMap<>());
+			return type.cast(components.computeIfAbsent(type, k -> supplier.get()));
+		}
+	}
+}
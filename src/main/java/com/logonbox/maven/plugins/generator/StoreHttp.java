@@ -0,0 +1,456 @@
+package com.logonbox.maven.plugins.generator;
+
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.zip.GZIPOutputStream;
+
+import com.sshtools.uhttpd.UHTTPD.Status;
+import com.sshtools.uhttpd.UHTTPD.Transaction;
+
+/**
+ * HTTP helpers for the extension store server, so that clients can cache what
+ * it serves and only download it again when it changes.
+ */
+final class StoreHttp {
+
+	/**
+	 * A single byte range requested using a <code>Range</code> header.
+	 */
+	static final class Range {
+		static final Range UNSATISFIABLE = new Range(-1, -1);
+
+		final long start;
+		final long length;
+
+		Range(long start, long length) {
+			this.start = start;
+			this.length = length;
+		}
+
+		boolean isSatisfiable() {
+			return this != UNSATISFIABLE;
+		}
+
+		String contentRange(long total) {
+			return isSatisfiable() ? "bytes " + start + "-" + (start + length - 1) + "/" + total : "bytes */" + total;
+		}
+	}
+
+	private StoreHttp() {
+	}
+
+	/**
+	 * Send a file, supporting conditional requests (see
+	 * {@link #isNotModified(Transaction, String, long)}) and single byte range
+	 * requests, so interrupted downloads may be resumed. A range that cannot be
+	 * satisfied is ignored and the whole file sent, as HTTP allows.
+	 * <p>
+	 * The whole file or the requested range is streamed from the file channel
+	 * in small chunks using direct buffers (see {@link FileRegionInputStream}),
+	 * so heap use does not grow with the size of the file or the number of
+	 * concurrent requests. Nothing is mapped, so the file may be rewritten or
+	 * replaced while it is being served.
+	 *
+	 * @param tx       transaction
+	 * @param type     content type
+	 * @param file     file
+	 * @param etag     entity tag
+	 * @param modified last modified time in milliseconds since the epoch
+	 * @throws IOException on error
+	 */
+	static void sendFile(Transaction tx, String type, File file, String etag, long modified) throws IOException {
+		if (isNotModified(tx, etag, modified))
+			return;
+		tx.header("Accept-Ranges", "bytes");
+		FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+		try {
+			long total = channel.size();
+			Optional<String> rangeHeader = tx.headerOr("Range");
+			Range range = rangeHeader.isPresent() && isRangeCurrent(tx.headerOr("If-Range"), etag, modified)
+					? range(rangeHeader.get(), total)
+					: null;
+			long start = 0;
+			long length = total;
+			if (range != null && range.isSatisfiable()) {
+				tx.responseCode(Status.PARTIAL_CONTENT);
+				tx.header("Content-Range", range.contentRange(total));
+				start = range.start;
+				length = range.length;
+			}
+			tx.responseLength(length);
+			tx.response(type, new FileRegionInputStream(channel, start, length));
+			channel = null;
+		} finally {
+			if (channel != null)
+				channel.close();
+		}
+	}
+
+	/**
+	 * Get whether a client accepts gzip content encoding, given its
+	 * <code>Accept-Encoding</code> header.
+	 *
+	 * @param acceptEncoding <code>Accept-Encoding</code> header
+	 * @return accepts gzip
+	 */
+	static boolean acceptsGzip(Optional<String> acceptEncoding) {
+		if (acceptEncoding.isEmpty())
+			return false;
+		boolean any = false;
+		for (String coding : acceptEncoding.get().split(",")) {
+			String[] parts = coding.split(";");
+			String name = parts[0].trim().toLowerCase();
+			boolean accepted = true;
+			for (int i = 1; i < parts.length; i++) {
+				String param = parts[i].trim();
+				if (param.startsWith("q=")) {
+					try {
+						accepted = Double.parseDouble(param.substring(2).trim()) > 0;
+					} catch (NumberFormatException nfe) {
+						accepted = false;
+					}
+				}
+			}
+			if (name.equals("gzip") || name.equals("x-gzip"))
+				return accepted;
+			if (name.equals("*"))
+				any = accepted;
+		}
+		return any;
+	}
+
+	/**
+	 * Compress some content using gzip.
+	 *
+	 * @param data data
+	 * @return compressed data
+	 */
+	static byte[] gzip(byte[] data) {
+		ByteArrayOutputStream out = new ByteArrayOutputStream(data.length / 4 + 64);
+		try (GZIPOutputStream gz = new GZIPOutputStream(out)) {
+			gz.write(data);
+		} catch (IOException ioe) {
+			throw new UncheckedIOException(ioe);
+		}
+		return out.toByteArray();
+	}
+
+	/**
+	 * Parse a <code>Range</code> header. Only a single range of bytes is
+	 * supported, anything else should be ignored and the whole content sent.
+	 *
+	 * @param header header value
+	 * @param total  length of the content
+	 * @return range, {@link Range#UNSATISFIABLE}, or <code>null</code> to ignore
+	 */
+	static Range range(String header, long total) {
+		header = header.trim();
+		if (!header.startsWith("bytes=") || header.indexOf(',') != -1)
+			return null;
+		String spec = header.substring(6).trim();
+		int idx = spec.indexOf('-');
+		if (idx == -1)
+			return null;
+		try {
+			String first = spec.substring(0, idx).trim();
+			String last = spec.substring(idx + 1).trim();
+			if (first.isEmpty()) {
+				/* Suffix range, i.e. the last N bytes */
+				long suffix = Long.parseLong(last);
+				if (suffix <= 0 || total == 0)
+					return Range.UNSATISFIABLE;
+				long length = Math.min(suffix, total);
+				return new Range(total - length, length);
+			}
+			long start = Long.parseLong(first);
+			long end = last.isEmpty() ? total - 1 : Math.min(Long.parseLong(last), total - 1);
+			if (start < 0 || (!last.isEmpty() && Long.parseLong(last) < start))
+				return null;
+			if (start >= total)
+				return Range.UNSATISFIABLE;
+			return new Range(start, end - start + 1);
+		} catch (NumberFormatException nfe) {
+			return null;
+		}
+	}
+
+	/**
+	 * Get whether a <code>Range</code> request should be honoured given its
+	 * <code>If-Range</code> header, i.e. the client's partial copy is of the
+	 * current content.
+	 *
+	 * @param ifRange  <code>If-Range</code> header
+	 * @param etag     entity tag
+	 * @param modified last modified time in milliseconds since the epoch
+	 * @return current
+	 */
+	static boolean isRangeCurrent(Optional<String> ifRange, String etag, long modified) {
+		if (ifRange.isEmpty())
+			return true;
+		String value = ifRange.get().trim();
+		if (value.startsWith("\"") || value.startsWith("W/"))
+			return value.equals(etag);
+		long date = parseHttpDate(value);
+		return date != -1 && date / 1000 == modified / 1000;
+	}
+
+	/**
+	 * Get a strong entity tag for a hash of some content.
+	 *
+	 * @param hash hash
+	 * @return entity tag
+	 */
+	static String etag(String hash) {
+		return "\"" + hash + "\"";
+	}
+
+	/**
+	 * Format a time as an HTTP date.
+	 *
+	 * @param millis milliseconds since the epoch
+	 * @return HTTP date
+	 */
+	static String httpDate(long millis) {
+		return DateTimeFormatter.RFC_1123_DATE_TIME
+				.format(ZonedDateTime.ofInstant(Instant.ofEpochMilli(millis), ZoneOffset.UTC));
+	}
+
+	/**
+	 * Add the <code>ETag</code> and <code>Last-Modified</code> headers to a
+	 * response, then check them against the request's
+	 * <code>If-None-Match</code> or (if there is none)
+	 * <code>If-Modified-Since</code> header. If the client already has this
+	 * content, the response is set to <code>304 Not Modified</code> and nothing
+	 * more should be sent.
+	 *
+	 * @param tx       transaction
+	 * @param etag     entity tag
+	 * @param modified last modified time in milliseconds since the epoch
+	 * @return not modified
+	 */
+	static boolean isNotModified(Transaction tx, String etag, long modified) {
+		tx.header("ETag", etag);
+		tx.header("Last-Modified", httpDate(modified));
+		if (isNotModified(tx.headerOr("If-None-Match"), tx.headerOr("If-Modified-Since"), etag, modified)) {
+			tx.responseCode(Status.NOT_MODIFIED);
+			return true;
+		}
+		return false;
+	}
+
+	static boolean isNotModified(Optional<String> ifNoneMatch, Optional<String> ifModifiedSince, String etag,
+			long modified) {
+		if (ifNoneMatch.isPresent()) {
+			return matches(ifNoneMatch.get(), etag, true);
+		}
+		if (ifModifiedSince.isPresent()) {
+			long since = parseHttpDate(ifModifiedSince.get());
+			/* HTTP dates only have a resolution of a second */
+			return since != -1 && modified / 1000 <= since / 1000;
+		}
+		return false;
+	}
+
+	/**
+	 * Get whether an entity tag matches one in a list of them, as used in
+	 * <code>If-None-Match</code> and <code>If-Match</code> headers.
+	 *
+	 * @param list  list of entity tags, or <code>*</code>
+	 * @param etag  entity tag
+	 * @param weak  whether to use weak comparison
+	 * @return matches
+	 */
+	static boolean matches(String list, String etag, boolean weak) {
+		for (String candidate : list.split(",")) {
+			candidate = candidate.trim();
+			if (candidate.equals("*"))
+				return true;
+			if (candidate.startsWith("W/")) {
+				if (!weak)
+					continue;
+				candidate = candidate.substring(2);
+			}
+			if (candidate.equals(etag))
+				return true;
+		}
+		return false;
+	}
+
+	/**
+	 * Parse an HTTP date.
+	 *
+	 * @param date date
+	 * @return milliseconds since the epoch, or -1 if the date is invalid
+	 */
+	static long parseHttpDate(String date) {
+		try {
+			return ZonedDateTime.parse(date.trim(), DateTimeFormatter.RFC_1123_DATE_TIME).toInstant().toEpochMilli();
+		} catch (DateTimeParseException dtpe) {
+			return -1;
+		}
+	}
+
+	/**
+	 * Streams a region of a file channel, reading it in chunks through a
+	 * direct buffer borrowed from a small pool, so the content is never held
+	 * on the heap beyond what the caller asks for in each read. If the stream
+	 * is drained with {@link #transferTo(OutputStream)}, the content is
+	 * instead sent using {@link FileChannel#transferTo(long, long, WritableByteChannel)}.
+	 * <p>
+	 * The channel is closed and the buffer returned to the pool as soon as the
+	 * end of the region is reached, as well as when the stream is closed.
+	 */
+	static final class FileRegionInputStream extends InputStream {
+		static final int CHUNK_SIZE = 65536;
+		static final int POOL_SIZE = 32;
+
+		private static final BlockingQueue<ByteBuffer> POOL = new ArrayBlockingQueue<>(POOL_SIZE);
+
+		private final FileChannel channel;
+		private final long end;
+		private long pos;
+		private ByteBuffer buffer;
+		private boolean closed;
+
+		FileRegionInputStream(FileChannel channel, long start, long length) {
+			this.channel = channel;
+			this.pos = start;
+			this.end = start + length;
+		}
+
+		@Override
+		public int read() throws IOException {
+			if (!fill())
+				return -1;
+			pos++;
+			return buffer.get() & 0xff;
+		}
+
+		@Override
+		public int read(byte[] b, int off, int len) throws IOException {
+			Objects.checkFromIndexSize(off, len, b.length);
+			if (len == 0)
+				return 0;
+			if (!fill())
+				return -1;
+			int n = Math.min(len, buffer.remaining());
+			buffer.get(b, off, n);
+			pos += n;
+			return n;
+		}
+
+		@Override
+		public long transferTo(OutputStream out) throws IOException {
+			checkOpen();
+			long transferred = 0;
+			/* Anything already read into the buffer goes first */
+			if (buffer != null && buffer.hasRemaining()) {
+				int n = buffer.remaining();
+				byte[] b = new byte[n];
+				buffer.get(b);
+				out.write(b);
+				pos += n;
+				transferred += n;
+			}
+			WritableByteChannel target = Channels.newChannel(out);
+			while (pos < end) {
+				long n = channel.transferTo(pos, end - pos, target);
+				if (n <= 0)
+					throw new EOFException("File is shorter than expected.");
+				pos += n;
+				transferred += n;
+			}
+			close();
+			return transferred;
+		}
+
+		@Override
+		public long skip(long n) throws IOException {
+			checkOpen();
+			long s = Math.max(0, Math.min(n, end - pos));
+			if (buffer != null) {
+				/* Skip within what has been read, or discard it */
+				if (s <= buffer.remaining())
+					buffer.position(buffer.position() + (int) s);
+				else
+					buffer.limit(0);
+			}
+			pos += s;
+			return s;
+		}
+
+		@Override
+		public int available() throws IOException {
+			return closed ? 0 : (int) Math.min(Integer.MAX_VALUE, end - pos);
+		}
+
+		@Override
+		public void close() throws IOException {
+			if (!closed) {
+				closed = true;
+				try {
+					channel.close();
+				} finally {
+					if (buffer != null) {
+						buffer.clear();
+						POOL.offer(buffer);
+						buffer = null;
+					}
+				}
+			}
+		}
+
+		private boolean fill() throws IOException {
+			checkOpen();
+			if (buffer != null && buffer.hasRemaining())
+				return true;
+			if (pos >= end) {
+				close();
+				return false;
+			}
+			if (buffer == null) {
+				buffer = POOL.poll();
+				if (buffer == null)
+					buffer = ByteBuffer.allocateDirect(CHUNK_SIZE);
+			}
+			buffer.clear();
+			buffer.limit((int) Math.min(buffer.capacity(), end - pos));
+			/* The buffer position is only advanced by reads, pos stays in step */
+			long at = pos;
+			while (buffer.hasRemaining()) {
+				int n = channel.read(buffer, at);
+				if (n == -1)
+					break;
+				at += n;
+			}
+			buffer.flip();
+			if (!buffer.hasRemaining())
+				throw new EOFException("File is shorter than expected.");
+			return true;
+		}
+
+		private void checkOpen() throws IOException {
+			if (closed && pos < end)
+				throw new IOException("Stream closed.");
+		}
+	}
+}
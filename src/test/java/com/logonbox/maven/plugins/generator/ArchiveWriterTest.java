@@ -0,0 +1,258 @@
+package com.logonbox.maven.plugins.generator;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Collectors;
+import java.util.zip.Deflater;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipException;
+import java.util.zip.ZipFile;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Archives written by {@link ArchiveWriter} must be readable by
+ * {@link ZipFile}, with the same content that was added.
+ */
+public class ArchiveWriterTest {
+
+	@TempDir
+	Path dir;
+
+	@Test
+	public void storedAndDeflatedEntriesRoundTrip() throws IOException {
+		byte[] text = repeat("Some text that compresses well. ", 1000);
+		byte[] random = random(100000);
+		File jar = dir.resolve("lib.jar").toFile();
+		Files.write(jar.toPath(), random);
+
+		Path archive = dir.resolve("test.zip");
+		try (ArchiveWriter writer = new ArchiveWriter(Files.newOutputStream(archive),
+				new CompressionPolicy(new String[] { "*.jar" }, Deflater.DEFAULT_COMPRESSION))) {
+			writer.directory("lib");
+			writer.file("lib/lib.jar", jar);
+			writer.bytes("text.txt", text);
+			writer.bytes("stored.txt", text, ZipEntry.STORED);
+			writer.content("plugin.properties", out -> out.write("plugin.id=test\n".getBytes(StandardCharsets.UTF_8)));
+			writer.bytes("empty.txt", new byte[0]);
+			writer.content("stored.properties", ZipEntry.STORED,
+					out -> out.write("a=b\n".getBytes(StandardCharsets.UTF_8)));
+		}
+
+		try (ZipFile zip = new ZipFile(archive.toFile())) {
+			assertEquals(7, zip.size());
+			assertTrue(zip.getEntry("lib/").isDirectory());
+			assertEntry(zip, "lib/lib.jar", ZipEntry.STORED, random);
+			assertEntry(zip, "text.txt", ZipEntry.DEFLATED, text);
+			assertEntry(zip, "stored.txt", ZipEntry.STORED, text);
+			assertEntry(zip, "plugin.properties", ZipEntry.DEFLATED,
+					"plugin.id=test\n".getBytes(StandardCharsets.UTF_8));
+			assertEntry(zip, "empty.txt", ZipEntry.DEFLATED, new byte[0]);
+			assertEntry(zip, "stored.properties", ZipEntry.STORED, "a=b\n".getBytes(StandardCharsets.UTF_8));
+			assertTrue(zip.getEntry("text.txt").getCompressedSize() < text.length);
+		}
+	}
+
+	@Test
+	public void entriesAreWrittenInOrderAdded() throws IOException {
+		List<String> names = new ArrayList<>();
+		Path archive = dir.resolve("order.zip");
+		try (ArchiveWriter writer = new ArchiveWriter(Files.newOutputStream(archive))) {
+			for (int i = 0; i < 200; i++) {
+				String name = "entry" + i + ".txt";
+				names.add(name);
+				/* Vary the size so compression finishes out of order */
+				writer.bytes(name, random((200 - i) * 100));
+			}
+		}
+		try (ZipFile zip = new ZipFile(archive.toFile())) {
+			assertEquals(names, Collections.list(zip.entries()).stream().map(ZipEntry::getName)
+					.collect(Collectors.toList()));
+		}
+	}
+
+	@Test
+	public void rawEntriesRoundTrip() throws IOException {
+		byte[] text = repeat("Raw copied text. ", 5000);
+		byte[] random = random(50000);
+		Path source = dir.resolve("source.zip");
+		try (ArchiveWriter writer = new ArchiveWriter(Files.newOutputStream(source))) {
+			writer.bytes("deflated.txt", text);
+			writer.bytes("stored.bin", random, ZipEntry.STORED);
+		}
+
+		/* Through a stream, and through a file channel */
+		Path streamed = dir.resolve("streamed.zip");
+		Path transferred = dir.resolve("transferred.zip");
+		try (ArchiveReader reader = new ArchiveReader(source)) {
+			try (ArchiveWriter writer = new ArchiveWriter(Files.newOutputStream(streamed))) {
+				writer.bytes("first.txt", text);
+				for (ArchiveReader.Entry entry : reader.getEntries())
+					writer.raw(reader, entry);
+			}
+			ArchiveWriter writer = new ArchiveWriter(transferred, CompressionPolicy.DEFLATE_ALL);
+			try (writer) {
+				writer.bytes("first.txt", text);
+				for (ArchiveReader.Entry entry : reader.getEntries())
+					writer.raw(reader, entry);
+			}
+			assertEquals(2, writer.getStatistics().getRawEntries());
+		}
+
+		for (Path archive : new Path[] { streamed, transferred }) {
+			try (ZipFile zip = new ZipFile(archive.toFile())) {
+				assertEquals(3, zip.size());
+				assertEntry(zip, "first.txt", ZipEntry.DEFLATED, text);
+				assertEntry(zip, "deflated.txt", ZipEntry.DEFLATED, text);
+				assertEntry(zip, "stored.bin", ZipEntry.STORED, random);
+			}
+			try (ArchiveReader reader = new ArchiveReader(archive)) {
+				assertArrayEquals(text, read(reader.getInputStream(reader.getEntry("deflated.txt"))));
+				assertArrayEquals(random, read(reader.getInputStream(reader.getEntry("stored.bin"))));
+			}
+		}
+	}
+
+	@Test
+	public void largeEntriesAreSpooled() throws IOException {
+		byte[] random = random(ArchiveWriter.SPOOL_THRESHOLD * 3);
+		byte[] text = repeat("Compresses to less than the spool threshold. ", 100000);
+		File jar = dir.resolve("random.bin").toFile();
+		Files.write(jar.toPath(), random);
+
+		/* Through a stream, and through a file channel */
+		Path streamed = dir.resolve("streamed.zip");
+		Path transferred = dir.resolve("transferred.zip");
+		try (ArchiveWriter writer = new ArchiveWriter(Files.newOutputStream(streamed))) {
+			writer.file("random.bin", jar);
+			writer.bytes("text.txt", text);
+			writer.bytes("random2.bin", random);
+		}
+		try (ArchiveWriter writer = new ArchiveWriter(transferred, CompressionPolicy.DEFLATE_ALL)) {
+			writer.file("random.bin", jar);
+			writer.bytes("text.txt", text);
+			writer.bytes("random2.bin", random);
+		}
+		for (Path archive : new Path[] { streamed, transferred }) {
+			try (ZipFile zip = new ZipFile(archive.toFile())) {
+				assertEquals(3, zip.size());
+				assertEntry(zip, "random.bin", ZipEntry.DEFLATED, random);
+				assertEntry(zip, "text.txt", ZipEntry.DEFLATED, text);
+				assertEntry(zip, "random2.bin", ZipEntry.DEFLATED, random);
+				assertTrue(zip.getEntry("random.bin").getCompressedSize() > ArchiveWriter.SPOOL_THRESHOLD);
+			}
+		}
+	}
+
+	@Test
+	public void duplicateEntriesAreRejected() throws IOException {
+		Path source = dir.resolve("source.zip");
+		try (ArchiveWriter writer = new ArchiveWriter(Files.newOutputStream(source))) {
+			writer.bytes("a.txt", new byte[] { 1 });
+		}
+		try (ArchiveReader reader = new ArchiveReader(source);
+				ArchiveWriter writer = new ArchiveWriter(Files.newOutputStream(dir.resolve("dup.zip")))) {
+			writer.bytes("a.txt", new byte[] { 1 });
+			writer.directory("d");
+			assertThrows(ZipException.class, () -> writer.bytes("a.txt", new byte[] { 2 }));
+			assertThrows(ZipException.class, () -> writer.content("a.txt", out -> out.write(3)));
+			assertThrows(ZipException.class, () -> writer.directory("d/"));
+			assertThrows(ZipException.class, () -> writer.raw(reader, reader.getEntry("a.txt")));
+		}
+	}
+
+	@Test
+	public void zip64EntryCount() throws IOException {
+		int count = 70000;
+		Path archive = dir.resolve("many.zip");
+		try (ArchiveWriter writer = new ArchiveWriter(Files.newOutputStream(archive))) {
+			for (int i = 0; i < count; i++)
+				writer.bytes("entry" + i, new byte[] { (byte) i }, ZipEntry.STORED);
+		}
+		try (ZipFile zip = new ZipFile(archive.toFile())) {
+			assertEquals(count, zip.size());
+			assertEntry(zip, "entry69999", ZipEntry.STORED, new byte[] { (byte) 69999 });
+		}
+		try (ArchiveReader reader = new ArchiveReader(archive)) {
+			assertEquals(count, reader.getEntries().size());
+		}
+	}
+
+	/**
+	 * Writes (and deflates) an entry of over 4 GiB, so is only run when the
+	 * <code>zip64.large</code> system property is <code>true</code>.
+	 */
+	@Test
+	@EnabledIfSystemProperty(named = "zip64.large", matches = "true")
+	public void zip64EntrySize() throws IOException {
+		long size = 0x100000000L + 1000;
+		File large = dir.resolve("large.bin").toFile();
+		try (RandomAccessFile raf = new RandomAccessFile(large, "rw")) {
+			raf.setLength(size);
+		}
+		Path archive = dir.resolve("large.zip");
+		try (ArchiveWriter writer = new ArchiveWriter(Files.newOutputStream(archive),
+				new CompressionPolicy(new String[0], Deflater.BEST_SPEED))) {
+			writer.bytes("before.txt", new byte[] { 1 });
+			writer.file("large.bin", large);
+			writer.bytes("after.txt", new byte[] { 2 });
+		}
+		try (ZipFile zip = new ZipFile(archive.toFile())) {
+			assertEquals(size, zip.getEntry("large.bin").getSize());
+			assertEntry(zip, "before.txt", ZipEntry.DEFLATED, new byte[] { 1 });
+			assertEntry(zip, "after.txt", ZipEntry.DEFLATED, new byte[] { 2 });
+		}
+		try (ArchiveReader reader = new ArchiveReader(archive)) {
+			assertEquals(size, reader.getEntry("large.bin").getSize());
+		}
+	}
+
+	static void assertEntry(ZipFile zip, String name, int method, byte[] content) throws IOException {
+		ZipEntry entry = zip.getEntry(name);
+		assertNotNull(entry);
+		assertEquals(method, entry.getMethod(), name);
+		assertEquals(content.length, entry.getSize(), name);
+		try (InputStream in = zip.getInputStream(entry)) {
+			assertArrayEquals(content, read(in));
+		}
+	}
+
+	static byte[] read(InputStream in) throws IOException {
+		try (in) {
+			ByteArrayOutputStream out = new ByteArrayOutputStream();
+			in.transferTo(out);
+			return out.toByteArray();
+		}
+	}
+
+	static byte[] repeat(String text, int times) {
+		StringBuilder b = new StringBuilder();
+		for (int i = 0; i < times; i++)
+			b.append(text);
+		return b.toString().getBytes(StandardCharsets.UTF_8);
+	}
+
+	static byte[] random(int size) {
+		byte[] data = new byte[size];
+		new Random(size).nextBytes(data);
+		return data;
+	}
+}
@@ -0,0 +1,50 @@
+package com.logonbox.maven.plugins.generator;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+public class BuildFingerprintTest {
+
+	@TempDir
+	Path tmp;
+
+	@Test
+	public void generatorLocation() {
+		File location = BuildFingerprint.generatorLocation();
+		assertNotNull(location);
+		assertTrue(location.exists(), "plugin location exists");
+	}
+
+	@Test
+	public void changesWithInputs() throws IOException {
+		File archive = tmp.resolve("test.zip").toFile();
+		Path input = Files.writeString(tmp.resolve("input.txt"), "abc");
+
+		BuildFingerprint first = new BuildFingerprint(archive).add("setting", "a").file("input", input.toFile());
+		assertFalse(first.isCurrent(archive));
+		Files.writeString(archive.toPath(), "archive");
+		first.save();
+
+		assertTrue(new BuildFingerprint(archive).add("setting", "a").file("input", input.toFile()).isCurrent(archive));
+		assertFalse(new BuildFingerprint(archive).add("setting", "b").file("input", input.toFile()).isCurrent(archive));
+
+		Files.setLastModifiedTime(input, FileTime.fromMillis(Files.getLastModifiedTime(input).toMillis() + 2000));
+		BuildFingerprint touched = new BuildFingerprint(archive).add("setting", "a").file("input", input.toFile());
+		assertNotEquals(first.value(), touched.value());
+		assertFalse(touched.isCurrent(archive));
+
+		touched.invalidate();
+		assertFalse(first.isCurrent(archive));
+	}
+}
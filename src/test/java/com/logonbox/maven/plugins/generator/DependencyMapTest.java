@@ -0,0 +1,154 @@
+package com.logonbox.maven.plugins.generator;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+public class DependencyMapTest {
+
+	@TempDir
+	Path dir;
+
+	@Test
+	public void writeAndRead() throws IOException {
+		Map<String, String> versions = versions();
+		Map<String, File> files = files();
+		Path path = dir.resolve(DependencyMap.FILENAME);
+		DependencyMap.write(path, versions, files);
+
+		for (boolean map : new boolean[] { true, false }) {
+			try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+				assertMap(versions, files, DependencyMap.open(channel, map));
+			}
+		}
+		assertMap(versions, files, DependencyMap.read(path, new AtomicLong()));
+	}
+
+	@Test
+	public void inMemory() {
+		assertMap(versions(), files(), DependencyMap.of(versions(), files()));
+	}
+
+	@Test
+	public void nullVersion() throws IOException {
+		Map<String, String> versions = new HashMap<>();
+		versions.put("com.example/none", null);
+		versions.put("com.example/some", "1.0");
+		Path path = dir.resolve(DependencyMap.FILENAME);
+		DependencyMap.write(path, versions, new HashMap<>());
+
+		DependencyMap map = DependencyMap.open(path);
+		assertTrue(map.contains("com.example/none"));
+		assertNull(map.getVersion("com.example/none"));
+		assertTrue(map.versions().containsKey("com.example/none"));
+		assertNull(map.versions().get("com.example/none"));
+		assertEquals(versions, new HashMap<>(map.versions()));
+	}
+
+	@Test
+	public void legacy() throws IOException {
+		Map<String, String> versions = versions();
+		Map<String, File> files = files();
+		Path legacy = dir.resolve(DependencyMap.LEGACY_FILENAME);
+		try (ObjectOutputStream out = new ObjectOutputStream(Files.newOutputStream(legacy))) {
+			out.writeObject(new HashMap<>(versions));
+			out.writeObject(new HashMap<>(files));
+		}
+
+		assertEquals(legacy.toFile(), DependencyMap.locate(dir.toFile()));
+		assertMap(versions, files, DependencyMap.open(legacy));
+
+		/* Writing the new format removes the legacy map */
+		Path path = dir.resolve(DependencyMap.FILENAME);
+		DependencyMap.write(path, versions, files);
+		assertFalse(Files.exists(legacy));
+		assertEquals(path.toFile(), DependencyMap.locate(dir.toFile()));
+	}
+
+	@Test
+	public void replaceWhileOpen() throws IOException {
+		Path path = dir.resolve(DependencyMap.FILENAME);
+		DependencyMap.write(path, versions(), files());
+		DependencyMap before = DependencyMap.open(path);
+
+		Map<String, String> versions = new HashMap<>(versions());
+		versions.put("com.example/new", "2.0");
+		DependencyMap.write(path, versions, files());
+
+		assertMap(versions(), files(), before);
+		assertMap(versions, files(), DependencyMap.open(path));
+	}
+
+	@Test
+	public void notAMap() throws IOException {
+		Path path = dir.resolve(DependencyMap.FILENAME);
+		Files.write(path, new byte[] { 1, 2, 3, 4, 5, 6, 7, 8 });
+		assertThrows(IOException.class, () -> DependencyMap.open(path));
+	}
+
+	@Test
+	public void layered() {
+		Map<String, String> lower = new HashMap<>();
+		lower.put("a", "1");
+		lower.put("b", "1");
+		Map<String, String> upper = new HashMap<>();
+		upper.put("b", "2");
+		upper.put("c", null);
+		Map<String, String> layered = DependencyMap.layered(lower, upper);
+		assertEquals("1", layered.get("a"));
+		assertEquals("2", layered.get("b"));
+		assertTrue(layered.containsKey("c"));
+		assertNull(layered.get("c"));
+		assertFalse(layered.containsKey("d"));
+		assertEquals(3, layered.size());
+	}
+
+	static void assertMap(Map<String, String> versions, Map<String, File> files, DependencyMap map) {
+		assertEquals(versions.size(), map.size());
+		assertEquals(versions, new HashMap<>(map.versions()));
+		assertEquals(files, new HashMap<>(map.files()));
+		for (Map.Entry<String, String> en : versions.entrySet()) {
+			assertTrue(map.contains(en.getKey()));
+			assertEquals(en.getValue(), map.getVersion(en.getKey()));
+			assertEquals(files.get(en.getKey()), map.getFile(en.getKey()));
+		}
+		assertFalse(map.contains("com.example/missing"));
+		assertNull(map.getVersion("com.example/missing"));
+		assertFalse(map.files().containsKey("org.example/nofile"));
+	}
+
+	static Map<String, String> versions() {
+		Map<String, String> versions = new HashMap<>();
+		versions.put("com.example/alpha", "1.0.0");
+		versions.put("com.example/beta", "1.0.0");
+		versions.put("com.example/beta:linux", "1.0.0");
+		versions.put("org.example/nofile", "2.1");
+		versions.put("org.example/unicode-\u00e9", "3.0-SNAPSHOT");
+		return versions;
+	}
+
+	static Map<String, File> files() {
+		Map<String, File> files = new HashMap<>();
+		files.put("com.example/alpha", new File("/repo/com/example/alpha/1.0.0/alpha-1.0.0.jar"));
+		files.put("com.example/beta", new File("/repo/com/example/beta/1.0.0/beta-1.0.0.jar"));
+		files.put("com.example/beta:linux", new File("/repo/com/example/beta/1.0.0/beta-1.0.0-linux.jar"));
+		files.put("org.example/unicode-\u00e9", new File("/repo/unicode.jar"));
+		return files;
+	}
+}
@@ -0,0 +1,37 @@
+package com.logonbox.maven.plugins.generator;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Random;
+
+import org.apache.commons.codec.digest.DigestUtils;
+import org.junit.jupiter.api.Test;
+
+public class DigestingOutputStreamTest {
+
+	@Test
+	public void digestsBelowBuffer() throws IOException {
+		byte[] data = new byte[200000];
+		new Random(0).nextBytes(data);
+
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		DigestingOutputStream digestOut = new DigestingOutputStream(bytes, Arrays.asList("MD5", "SHA-256"));
+		try (BufferedOutputStream out = new BufferedOutputStream(digestOut, 65536)) {
+			/* Small writes, as an archive's headers are written */
+			for (int i = 0; i < 1000; i++)
+				out.write(data[i]);
+			out.write(data, 1000, 7);
+			out.write(data, 1007, data.length - 1007);
+		}
+
+		assertArrayEquals(data, bytes.toByteArray());
+		assertEquals(data.length, digestOut.getCount());
+		assertEquals(DigestUtils.md5Hex(data), digestOut.getDigests().get("MD5"));
+		assertEquals(DigestUtils.sha256Hex(data), digestOut.getDigests().get("SHA-256"));
+	}
+}
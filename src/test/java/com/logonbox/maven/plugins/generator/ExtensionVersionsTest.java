@@ -0,0 +1,117 @@
+package com.logonbox.maven.plugins.generator;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Properties;
+import java.util.jar.Manifest;
+import java.util.stream.Stream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+import org.apache.maven.artifact.Artifact;
+import org.apache.maven.artifact.DefaultArtifact;
+import org.apache.maven.artifact.handler.DefaultArtifactHandler;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Processing the versions of an extension archive must rewrite the nested
+ * extension jars, and leave everything else as it was.
+ */
+public class ExtensionVersionsTest {
+
+	static class Mojo extends ProjectExtensionsMojo {
+		Mojo() {
+			processExtensionVersions = true;
+		}
+
+		@Override
+		protected boolean isSnapshotVersionAsBuildNumber() {
+			return true;
+		}
+	}
+
+	@TempDir
+	Path dir;
+
+	@Test
+	public void nestedJarsAreProcessed() throws IOException {
+		byte[] other = ArchiveWriterTest.random(10000);
+		Path source = dir.resolve("source.zip");
+		try (ArchiveWriter writer = new ArchiveWriter(Files.newOutputStream(source))) {
+			writer.directory("ext");
+			writer.bytes("ext/com.logonbox-deflated-1.0-SNAPSHOT.jar", extensionJar("deflated"), ZipEntry.DEFLATED);
+			writer.bytes("ext/com.logonbox-stored-1.0-SNAPSHOT.jar", extensionJar("stored"), ZipEntry.STORED);
+			writer.bytes("ext/com.logonbox-invalid-1.0.jar", other, ZipEntry.DEFLATED);
+			writer.bytes("ext/other.bin", other);
+		}
+
+		Mojo mojo = new Mojo();
+		String expected = mojo.getVersion(true, "1.0-SNAPSHOT");
+		assertNotEquals("1.0-SNAPSHOT", expected);
+		Path target = dir.resolve("target.zip");
+		mojo.processVersionsInExtensionArchives(artifact(), source, target);
+
+		try (ZipFile zip = new ZipFile(target.toFile())) {
+			assertEquals(5, zip.size());
+			assertEquals(ZipEntry.DEFLATED, zip.getEntry("ext/com.logonbox-deflated-1.0-SNAPSHOT.jar").getMethod());
+			assertEquals(ZipEntry.STORED, zip.getEntry("ext/com.logonbox-stored-1.0-SNAPSHOT.jar").getMethod());
+			for (String name : new String[] { "deflated", "stored" }) {
+				Path jar = dir.resolve(name + ".jar");
+				try (InputStream in = zip.getInputStream(zip.getEntry("ext/com.logonbox-" + name + "-1.0-SNAPSHOT.jar"))) {
+					Files.copy(in, jar);
+				}
+				try (ZipFile inner = new ZipFile(jar.toFile())) {
+					Manifest mf;
+					try (InputStream in = inner.getInputStream(inner.getEntry("META-INF/MANIFEST.MF"))) {
+						mf = new Manifest(in);
+					}
+					assertEquals(expected, mf.getMainAttributes().getValue("X-Extension-Version"));
+					Properties properties = new Properties();
+					try (InputStream in = inner.getInputStream(inner.getEntry("plugin.properties"))) {
+						properties.load(in);
+					}
+					assertEquals(expected, properties.getProperty("plugin.version"));
+					assertEquals(name, properties.getProperty("plugin.id"));
+					assertArrayEquals(("class " + name).getBytes(StandardCharsets.UTF_8),
+							ArchiveWriterTest.read(inner.getInputStream(inner.getEntry("Test.class"))));
+				}
+			}
+			ArchiveWriterTest.assertEntry(zip, "ext/com.logonbox-invalid-1.0.jar", ZipEntry.DEFLATED, other);
+			ArchiveWriterTest.assertEntry(zip, "ext/other.bin", ZipEntry.DEFLATED, other);
+		}
+
+		/* No temporary files are left behind */
+		try (Stream<Path> files = Files.list(dir)) {
+			assertFalse(files.anyMatch(p -> p.getFileName().toString().startsWith("nested")
+					|| p.getFileName().toString().startsWith("processed")));
+		}
+	}
+
+	private static Artifact artifact() {
+		return new DefaultArtifact("com.logonbox", "test", "1.0-SNAPSHOT", "compile", "zip", "extension-archive",
+				new DefaultArtifactHandler("zip"));
+	}
+
+	private byte[] extensionJar(String id) throws IOException {
+		Path jar = dir.resolve("source-" + id + ".jar");
+		try (ArchiveWriter writer = new ArchiveWriter(Files.newOutputStream(jar))) {
+			writer.bytes("META-INF/MANIFEST.MF",
+					"Manifest-Version: 1.0\r\nX-Extension-Version: 1.0-SNAPSHOT\r\n\r\n".getBytes(StandardCharsets.UTF_8));
+			writer.bytes("plugin.properties",
+					("plugin.id=" + id + "\nplugin.version=1.0-SNAPSHOT\n").getBytes(StandardCharsets.UTF_8));
+			writer.bytes("Test.class", ("class " + id).getBytes(StandardCharsets.UTF_8));
+		}
+		byte[] data = Files.readAllBytes(jar);
+		Files.delete(jar);
+		return data;
+	}
+}
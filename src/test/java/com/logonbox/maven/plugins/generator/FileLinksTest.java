@@ -0,0 +1,57 @@
+package com.logonbox.maven.plugins.generator;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+public class FileLinksTest {
+
+	@TempDir
+	Path dir;
+
+	@Test
+	public void publishKeepsContentAndTime() throws IOException {
+		Path source = source();
+		for (FileLinks.Strategy strategy : FileLinks.Strategy.values()) {
+			Path target = dir.resolve("target-" + strategy);
+			Files.write(target, new byte[] { 9 });
+			FileLinks.publish(source, target, strategy);
+			assertArrayEquals(Files.readAllBytes(source), Files.readAllBytes(target), strategy.name());
+			assertEquals(Files.getLastModifiedTime(source), Files.getLastModifiedTime(target), strategy.name());
+		}
+	}
+
+	@Test
+	public void reflinkWithoutLinkFallback() throws IOException {
+		Path source = source();
+		Path target = dir.resolve("target.jar");
+		assertNotEquals(FileLinks.Strategy.LINK, FileLinks.publish(source, target, FileLinks.Strategy.REFLINK, false));
+		assertArrayEquals(Files.readAllBytes(source), Files.readAllBytes(target));
+		/* Never the same file as the source */
+		assertFalse(Files.isSameFile(source, target));
+	}
+
+	@Test
+	public void copyNeverLinks() throws IOException {
+		Path source = source();
+		Path target = dir.resolve("target.jar");
+		assertEquals(FileLinks.Strategy.COPY, FileLinks.publish(source, target, FileLinks.Strategy.COPY, true));
+		assertFalse(Files.isSameFile(source, target));
+	}
+
+	private Path source() throws IOException {
+		Path source = dir.resolve("source.jar");
+		Files.write(source, new byte[] { 1, 2, 3, 4 });
+		Files.setLastModifiedTime(source, FileTime.fromMillis(1700000000000L));
+		return source;
+	}
+}
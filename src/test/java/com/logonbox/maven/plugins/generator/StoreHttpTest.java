@@ -0,0 +1,224 @@
+package com.logonbox.maven.plugins.generator;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Optional;
+import java.util.Random;
+import java.util.zip.GZIPInputStream;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+public class StoreHttpTest {
+
+	@TempDir
+	Path tmp;
+
+	private static final String ETAG = StoreHttp.etag("abc123");
+	private static final long MODIFIED = 1700000000123L;
+
+	@Test
+	public void httpDates() {
+		assertEquals("Tue, 14 Nov 2023 22:13:20 GMT", StoreHttp.httpDate(MODIFIED));
+		assertEquals(1700000000000L, StoreHttp.parseHttpDate("Tue, 14 Nov 2023 22:13:20 GMT"));
+		assertEquals(1700000000000L, StoreHttp.parseHttpDate(" Tue, 14 Nov 2023 22:13:20 GMT "));
+		assertEquals(-1, StoreHttp.parseHttpDate("yesterday"));
+		assertEquals(-1, StoreHttp.parseHttpDate(""));
+	}
+
+	@Test
+	public void noConditions() {
+		assertFalse(notModified(null, null));
+	}
+
+	@Test
+	public void ifNoneMatch() {
+		assertEquals("\"abc123\"", ETAG);
+		assertTrue(notModified("\"abc123\"", null));
+		assertTrue(notModified("\"other\", \"abc123\"", null));
+		assertTrue(notModified("W/\"abc123\"", null));
+		assertTrue(notModified("*", null));
+		assertFalse(notModified("\"other\"", null));
+		assertFalse(notModified("abc123", null));
+		assertFalse(notModified("\"abc123-gzip\"", null));
+	}
+
+	@Test
+	public void ifModifiedSince() {
+		assertTrue(notModified(null, StoreHttp.httpDate(MODIFIED)));
+		/* Only second resolution */
+		assertTrue(notModified(null, "Tue, 14 Nov 2023 22:13:20 GMT"));
+		assertTrue(notModified(null, StoreHttp.httpDate(MODIFIED + 60000)));
+		assertFalse(notModified(null, StoreHttp.httpDate(MODIFIED - 1000)));
+		assertFalse(notModified(null, "not a date"));
+	}
+
+	@Test
+	public void ifNoneMatchTakesPrecedence() {
+		assertFalse(notModified("\"other\"", StoreHttp.httpDate(MODIFIED)));
+		assertTrue(notModified("\"abc123\"", StoreHttp.httpDate(MODIFIED - 60000)));
+	}
+
+	@Test
+	public void strongAndWeakMatching() {
+		assertTrue(StoreHttp.matches("W/\"abc123\"", ETAG, true));
+		assertFalse(StoreHttp.matches("W/\"abc123\"", ETAG, false));
+		assertTrue(StoreHttp.matches("\"abc123\"", ETAG, false));
+	}
+
+	@Test
+	public void ranges() {
+		assertRange(0, 100, StoreHttp.range("bytes=0-99", 1000));
+		assertRange(500, 500, StoreHttp.range("bytes=500-", 1000));
+		assertRange(900, 100, StoreHttp.range("bytes=-100", 1000));
+		assertRange(999, 1, StoreHttp.range(" bytes=999-999 ", 1000));
+		/* The end is clamped to the content, and a suffix to its length */
+		assertRange(900, 100, StoreHttp.range("bytes=900-5000", 1000));
+		assertRange(0, 1000, StoreHttp.range("bytes=-5000", 1000));
+	}
+
+	@Test
+	public void unsatisfiableRanges() {
+		assertSame(StoreHttp.Range.UNSATISFIABLE, StoreHttp.range("bytes=1000-", 1000));
+		assertSame(StoreHttp.Range.UNSATISFIABLE, StoreHttp.range("bytes=2000-3000", 1000));
+		assertSame(StoreHttp.Range.UNSATISFIABLE, StoreHttp.range("bytes=-0", 1000));
+		assertSame(StoreHttp.Range.UNSATISFIABLE, StoreHttp.range("bytes=0-", 0));
+		assertEquals("bytes */1000", StoreHttp.Range.UNSATISFIABLE.contentRange(1000));
+	}
+
+	@Test
+	public void ignoredRanges() {
+		/* Anything not understood means the whole content is sent */
+		assertNull(StoreHttp.range("bytes=0-1,5-6", 1000));
+		assertNull(StoreHttp.range("items=0-1", 1000));
+		assertNull(StoreHttp.range("bytes=5", 1000));
+		assertNull(StoreHttp.range("bytes=10-5", 1000));
+		assertNull(StoreHttp.range("bytes=a-b", 1000));
+		assertNull(StoreHttp.range("bytes=-", 1000));
+	}
+
+	@Test
+	public void contentRange() {
+		assertEquals("bytes 0-99/1000", StoreHttp.range("bytes=0-99", 1000).contentRange(1000));
+		assertEquals("bytes 900-999/1000", StoreHttp.range("bytes=-100", 1000).contentRange(1000));
+	}
+
+	@Test
+	public void ifRange() {
+		assertTrue(StoreHttp.isRangeCurrent(Optional.empty(), ETAG, MODIFIED));
+		assertTrue(StoreHttp.isRangeCurrent(Optional.of("\"abc123\""), ETAG, MODIFIED));
+		assertFalse(StoreHttp.isRangeCurrent(Optional.of("\"other\""), ETAG, MODIFIED));
+		/* Weak tags never match */
+		assertFalse(StoreHttp.isRangeCurrent(Optional.of("W/\"abc123\""), ETAG, MODIFIED));
+		assertTrue(StoreHttp.isRangeCurrent(Optional.of(StoreHttp.httpDate(MODIFIED)), ETAG, MODIFIED));
+		assertFalse(StoreHttp.isRangeCurrent(Optional.of(StoreHttp.httpDate(MODIFIED - 1000)), ETAG, MODIFIED));
+		assertFalse(StoreHttp.isRangeCurrent(Optional.of("garbage"), ETAG, MODIFIED));
+	}
+
+	@Test
+	public void acceptsGzip() {
+		assertFalse(StoreHttp.acceptsGzip(Optional.empty()));
+		assertTrue(StoreHttp.acceptsGzip(Optional.of("gzip")));
+		assertTrue(StoreHttp.acceptsGzip(Optional.of("deflate, GZIP;q=0.5, br")));
+		assertTrue(StoreHttp.acceptsGzip(Optional.of("x-gzip")));
+		assertTrue(StoreHttp.acceptsGzip(Optional.of("*")));
+		assertFalse(StoreHttp.acceptsGzip(Optional.of("identity")));
+		assertFalse(StoreHttp.acceptsGzip(Optional.of("gzip;q=0")));
+		assertFalse(StoreHttp.acceptsGzip(Optional.of("gzip;q=0.0, *")));
+		assertFalse(StoreHttp.acceptsGzip(Optional.of("*;q=0")));
+		assertFalse(StoreHttp.acceptsGzip(Optional.of("gzip;q=x")));
+	}
+
+	@Test
+	public void gzip() throws IOException {
+		byte[] data = "{\"extensions\":[]}".repeat(100).getBytes(StandardCharsets.UTF_8);
+		byte[] gzipped = StoreHttp.gzip(data);
+		assertTrue(gzipped.length < data.length);
+		try (GZIPInputStream in = new GZIPInputStream(new ByteArrayInputStream(gzipped))) {
+			assertArrayEquals(data, in.readAllBytes());
+		}
+	}
+
+	@Test
+	public void fileRegions() throws IOException {
+		int chunk = StoreHttp.FileRegionInputStream.CHUNK_SIZE;
+		byte[] data = new byte[chunk * 3 + 123];
+		new Random(0).nextBytes(data);
+		Path file = tmp.resolve("region.zip");
+		Files.write(file, data);
+
+		/* Whole file, a byte at a time then in uneven reads crossing chunks */
+		FileChannel channel = FileChannel.open(file);
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		try (var in = new StoreHttp.FileRegionInputStream(channel, 0, data.length)) {
+			for (int i = 0; i < 10; i++)
+				out.write(in.read());
+			byte[] buf = new byte[chunk - 7];
+			int n;
+			while ((n = in.read(buf, 0, buf.length)) != -1)
+				out.write(buf, 0, n);
+			assertEquals(-1, in.read());
+			assertFalse(channel.isOpen(), "closed at end");
+		}
+		assertArrayEquals(data, out.toByteArray());
+
+		/* A range, skipping both within a chunk and beyond it */
+		long start = chunk - 5;
+		int length = chunk * 2;
+		channel = FileChannel.open(file);
+		out.reset();
+		try (var in = new StoreHttp.FileRegionInputStream(channel, start, length)) {
+			out.write(in.readNBytes(10));
+			assertEquals(100, in.skip(100));
+			assertEquals(chunk, in.skip(chunk));
+			out.write(in.readAllBytes());
+			assertEquals(0, in.skip(1));
+		}
+		byte[] expected = new byte[length - 100 - chunk];
+		System.arraycopy(data, (int) start, expected, 0, 10);
+		System.arraycopy(data, (int) start + 110 + chunk, expected, 10, expected.length - 10);
+		assertArrayEquals(expected, out.toByteArray());
+		assertFalse(channel.isOpen(), "closed at end");
+	}
+
+	@Test
+	public void fileRegionTransfer() throws IOException {
+		byte[] data = new byte[StoreHttp.FileRegionInputStream.CHUNK_SIZE * 2 + 1];
+		new Random(1).nextBytes(data);
+		Path file = tmp.resolve("transfer.zip");
+		Files.write(file, data);
+
+		FileChannel channel = FileChannel.open(file);
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		try (var in = new StoreHttp.FileRegionInputStream(channel, 1, data.length - 1)) {
+			out.write(in.read());
+			assertEquals(data.length - 2, in.transferTo(out));
+			assertFalse(channel.isOpen(), "closed at end");
+		}
+		assertArrayEquals(Arrays.copyOfRange(data, 1, data.length), out.toByteArray());
+	}
+
+	private static void assertRange(long start, long length, StoreHttp.Range range) {
+		assertTrue(range != null && range.isSatisfiable(), "satisfiable range");
+		assertEquals(start, range.start);
+		assertEquals(length, range.length);
+	}
+
+	private static boolean notModified(String ifNoneMatch, String ifModifiedSince) {
+		return StoreHttp.isNotModified(Optional.ofNullable(ifNoneMatch), Optional.ofNullable(ifModifiedSince), ETAG,
+				MODIFIED);
+	}
+}
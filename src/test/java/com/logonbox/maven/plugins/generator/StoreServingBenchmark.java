@@ -0,0 +1,154 @@
+package com.logonbox.maven.plugins.generator;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.sshtools.uhttpd.UHTTPD;
+import com.sshtools.uhttpd.UHTTPD.RootContext;
+
+/**
+ * Compares the throughput and heap use of serving an extension archive with
+ * uhttpd's <code>tx.response(File)</code> against streaming it with
+ * {@link StoreHttp#sendFile(com.sshtools.uhttpd.UHTTPD.Transaction, String, File, String, long)},
+ * as the extension store server does.
+ * <p>
+ * This is not a unit test, run it from the test classpath with :-
+ *
+ * <pre>
+ * java com.logonbox.maven.plugins.generator.StoreServingBenchmark [sizeMiB] [clients] [requestsPerClient] [port]
+ * </pre>
+ *
+ * Clients run in the same JVM as the server, but only ever allocate a small
+ * fixed buffer each, so differences in heap use and garbage collection are
+ * down to how the server sends the file. Run with a fixed heap (e.g.
+ * <code>-Xms512m -Xmx512m</code>) so the figures are comparable.
+ */
+public class StoreServingBenchmark {
+
+	private static final String ETAG = StoreHttp.etag("benchmark");
+
+	public static void main(String[] args) throws Exception {
+		int sizeMiB = args.length > 0 ? Integer.parseInt(args[0]) : 50;
+		int clients = args.length > 1 ? Integer.parseInt(args[1]) : 16;
+		int requests = args.length > 2 ? Integer.parseInt(args[2]) : 20;
+		int port = args.length > 3 ? Integer.parseInt(args[3]) : 18081;
+
+		File file = File.createTempFile("benchmark", ".zip");
+		file.deleteOnExit();
+		try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+			byte[] block = new byte[1024 * 1024];
+			new Random(0).nextBytes(block);
+			for (int i = 0; i < sizeMiB; i++)
+				raf.write(block);
+		}
+		long modified = file.lastModified();
+
+		RootContext server = UHTTPD.server().
+				withHttp(port).
+				withoutHttps().
+				get("/file/.*", tx -> tx.response("application/zip", file)).
+				get("/stream/.*", tx -> StoreHttp.sendFile(tx, "application/zip", file, ETAG, modified)).
+				build();
+		Thread thread = new Thread(server::run, "BenchmarkServer");
+		thread.setDaemon(true);
+		thread.start();
+
+		System.out.println(String.format("%d MiB archive, %d clients, %d requests each.", sizeMiB, clients,
+				requests));
+		for (int round = 0; round < 2; round++) {
+			String label = round == 0 ? " (warm up)" : "";
+			run("tx.response(File)" + label, "http://localhost:" + port + "/file/x.zip", clients, requests,
+					file.length());
+			run("streamed sendFile" + label, "http://localhost:" + port + "/stream/x.zip", clients, requests,
+					file.length());
+		}
+		System.exit(0);
+	}
+
+	static void run(String name, String url, int clients, int requests, long expected) throws Exception {
+		System.gc();
+		MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+		long gcCount = gcCount();
+		long gcMillis = gcMillis();
+		AtomicLong peakHeap = new AtomicLong(memory.getHeapMemoryUsage().getUsed());
+		AtomicBoolean running = new AtomicBoolean(true);
+		Thread sampler = new Thread(() -> {
+			while (running.get()) {
+				peakHeap.accumulateAndGet(memory.getHeapMemoryUsage().getUsed(), Math::max);
+				try {
+					Thread.sleep(5);
+				} catch (InterruptedException e) {
+					return;
+				}
+			}
+		});
+		sampler.setDaemon(true);
+		long baseHeap = peakHeap.get();
+		sampler.start();
+
+		AtomicLong bytes = new AtomicLong();
+		ExecutorService executor = Executors.newFixedThreadPool(clients);
+		long started = System.nanoTime();
+		try {
+			List<Future<?>> futures = new ArrayList<>();
+			for (int i = 0; i < clients; i++) {
+				futures.add(executor.submit(() -> {
+					byte[] buf = new byte[65536];
+					for (int r = 0; r < requests; r++) {
+						HttpURLConnection conn = (HttpURLConnection) new URL(url).openConnection();
+						long read = 0;
+						try (InputStream in = conn.getInputStream()) {
+							int n;
+							while ((n = in.read(buf)) != -1)
+								read += n;
+						}
+						if (read != expected)
+							throw new IOException(String.format("Expected %d bytes, got %d.", expected, read));
+						bytes.addAndGet(read);
+					}
+					return null;
+				}));
+			}
+			for (Future<?> future : futures)
+				future.get();
+		} finally {
+			executor.shutdownNow();
+			running.set(false);
+			sampler.join();
+		}
+		double seconds = (System.nanoTime() - started) / 1e9;
+		System.out.println(String.format(
+				"%-30s %8.1f MiB/s %8.1f req/s   peak heap +%6d MiB   %4d GCs (%d ms)", name,
+				bytes.get() / 1024d / 1024d / seconds, clients * requests / seconds,
+				(peakHeap.get() - baseHeap) / 1024 / 1024, gcCount() - gcCount, gcMillis() - gcMillis));
+	}
+
+	static long gcCount() {
+		long count = 0;
+		for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans())
+			count += Math.max(0, gc.getCollectionCount());
+		return count;
+	}
+
+	static long gcMillis() {
+		long millis = 0;
+		for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans())
+			millis += Math.max(0, gc.getCollectionTime());
+		return millis;
+	}
+}